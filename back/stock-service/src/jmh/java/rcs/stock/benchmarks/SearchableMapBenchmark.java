@@ -0,0 +1,104 @@
+package rcs.stock.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rcs.stock.services.FinnhubService.StockResponse;
+import rcs.stock.utils.SearchableMap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexes 20,000 stocks whose descriptions mostly share words like "inc" or "corp", to measure
+ * incremental updates of the symbol universe, like a live feed of listing changes would make,
+ * and searches merging the posting lists of many terms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchableMapBenchmark {
+
+    private static final String[] SYLLABLES = {
+            "ap", "ple", "mi", "cro", "soft", "tech", "no", "lo", "gies", "hold", "ings", "bank",
+            "cor", "por", "at", "ed", "in", "ter", "na", "tio", "nal", "en", "er", "gy", "phar"
+    };
+
+    private static final String[] COMMON_WORDS = { "inc", "corp", "ltd", "holdings", "group", "class a" };
+
+    private final Random random = new Random(42);
+
+    private SearchableMap<String, StockResponse> searchableMap;
+
+    private List<StockResponse> stocks;
+
+    @Setup
+    public void setup() {
+        Map<String, StockResponse> entries = new LinkedHashMap<>();
+        while (entries.size() < 20_000) {
+            StockResponse stock = stock(symbol(), word() + " " + word() + " " + commonWord());
+            entries.put(stock.symbol().toLowerCase(), stock);
+        }
+
+        stocks = new ArrayList<>(entries.values());
+        searchableMap = new SearchableMap<>(StockResponse::getSearch);
+        searchableMap.putAll(entries);
+    }
+
+    /**
+     * Re-puts a stock whose description changed one of its words
+     */
+    @Benchmark
+    public void putChangedStock() {
+        StockResponse stock = stocks.get(random.nextInt(stocks.size()));
+        String description = stock.description().substring(0, stock.description().lastIndexOf(' ')) + " " + commonWord();
+        searchableMap.put(stock.symbol().toLowerCase(), stock(stock.symbol(), description));
+    }
+
+    /**
+     * Finds "inc", "ing", "in", "ings", "holdings" and more, shared by most stocks
+     */
+    @Benchmark
+    public List<StockResponse> searchCommonWords() {
+        return searchableMap.searchBySubstringFuzzy("inc", 1);
+    }
+
+    @Benchmark
+    public List<StockResponse> searchCommonWordsTop10() {
+        return searchableMap.searchBySubstringFuzzy("inc", 1, 10);
+    }
+
+    @Benchmark
+    public List<StockResponse> searchManyWordsTop10() {
+        return searchableMap.searchByTokensFuzzy(List.of("micro", "tech", "inc"), token -> 1, 10);
+    }
+
+    private StockResponse stock(String symbol, String description) {
+        return new StockResponse("USD", description, symbol, "", "", "", symbol, "", "Common Stock");
+    }
+
+    private String symbol() {
+        StringBuilder symbol = new StringBuilder();
+        for (int i = 0; i < 1 + random.nextInt(5); i++) {
+            symbol.append((char) ('A' + random.nextInt(26)));
+        }
+        return symbol.toString();
+    }
+
+    private String word() {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < 2 + random.nextInt(3); i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    private String commonWord() {
+        return COMMON_WORDS[random.nextInt(COMMON_WORDS.length)];
+    }
+}
@@ -7,7 +7,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 import rcs.stock.services.FinnhubService;
+import rcs.stock.utils.ExpiringCache;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.stream.Collectors;
 
@@ -26,12 +28,23 @@ public class FinnhubConfig {
     @Value("${services.finnhub.exchanges}")
     private String exchanges;
 
+    @Value("${services.finnhub.searchTimeoutMillis}")
+    private long searchTimeoutMillis;
+
+    @Value("${services.finnhub.quoteCacheTtlMillis}")
+    private long quoteCacheTtlMillis;
+
+    @Value("${services.finnhub.quoteCacheMaxSize}")
+    private int quoteCacheMaxSize;
+
     @Bean
     public FinnhubService getFinnhubService() {
         return new FinnhubService(
                 finnhubBaseUrl,
                 finnhubApiToken,
                 Arrays.stream(exchanges.split(",")).collect(Collectors.toSet()),
+                searchTimeoutMillis,
+                new ExpiringCache<>(Duration.ofMillis(quoteCacheTtlMillis), quoteCacheMaxSize),
                 context.getBean(RestTemplate.class));
     }
 }
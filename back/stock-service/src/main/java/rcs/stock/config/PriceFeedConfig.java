@@ -0,0 +1,57 @@
+package rcs.stock.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import rcs.stock.services.FinnhubService;
+import rcs.stock.services.PollingPriceFeed;
+import rcs.stock.services.PriceFeed;
+import rcs.stock.services.StreamingPriceFeed;
+
+import java.net.URI;
+
+@Configuration
+public class PriceFeedConfig {
+
+    @Autowired
+    private ApplicationContext context;
+
+    // "streaming" for Finnhub's trade stream, or "polling" to ask for prices at the notify rate
+    @Value("${web-socket.price-feed}")
+    private String priceFeed;
+
+    @Value("${web-socket.stock-price-notify-rate}")
+    private long pollRateMillis;
+
+    @Value("${web-socket.stock-price-fetch-concurrency}")
+    private int priceFetchConcurrency;
+
+    @Value("${services.finnhub.streamUrl}")
+    private String finnhubStreamUrl;
+
+    @Value("${services.finnhub.streamSyncRateMillis}")
+    private long streamSyncRateMillis;
+
+    @Value("${services.finnhub.previousCloseTtlMillis}")
+    private long previousCloseTtlMillis;
+
+    @Value("${services.finnhub.token}")
+    private String finnhubApiToken;
+
+    @Bean
+    public PriceFeed getPriceFeed() {
+        FinnhubService finnhubService = context.getBean(FinnhubService.class);
+
+        if ("streaming".equals(priceFeed)) {
+            return new StreamingPriceFeed(
+                    URI.create(finnhubStreamUrl + "?token=" + finnhubApiToken),
+                    finnhubService,
+                    streamSyncRateMillis,
+                    previousCloseTtlMillis);
+        }
+
+        return new PollingPriceFeed(finnhubService, pollRateMillis, priceFetchConcurrency);
+    }
+}
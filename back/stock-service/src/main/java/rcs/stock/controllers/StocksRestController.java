@@ -7,9 +7,11 @@ import rcs.stock.models.StockWithFollowers;
 import rcs.stock.models.UserStocks;
 import rcs.stock.services.FinnhubService;
 import rcs.stock.services.UserStocksService;
+import rcs.stock.utils.ExpiringCache;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 public class StocksRestController {
@@ -33,13 +35,19 @@ public class StocksRestController {
 
     }
 
+    // the request thread is released while the search runs
     @GetMapping("/stocks")
-    public List<FinnhubService.StockResponse> searchStocks(
+    public CompletableFuture<List<FinnhubService.StockResponse>> searchStocks(
             @RequestParam(required = true) String search,
             @RequestParam(required = true) int limit) {
         return finnhubService.searchStocks(search, limit);
     }
 
+    @GetMapping("/quote-cache-stats")
+    public ExpiringCache.Stats getQuoteCacheStats() {
+        return finnhubService.getQuoteCacheStats();
+    }
+
     @GetMapping("/my-stocks")
     public UserStocks getMyStocks(HttpServletRequest request) {
         return authUtils.tryGetLoggedInUser(request)
@@ -1,18 +1,21 @@
 package rcs.stock.services;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.rcs.trie.SearchBudget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 import rcs.stock.models.StockPrice;
 import rcs.stock.services.exceptions.StockNotFoundException;
+import rcs.stock.utils.ExpiringCache;
 import rcs.stock.utils.SearchableMap;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -51,8 +54,10 @@ public class FinnhubService {
 
     private final Logger logger = LoggerFactory.getLogger(FinnhubService.class);
 
-    private final SearchableMap<String, StockResponse> stocksSearchableMap =
-            new SearchableMap<>(StockResponse::getSearch);
+    private final SearchableMap<String, StockResponse> stocksSearchableMap;
+
+    // by lowercase symbol: many subscribers of the same stock share a single request to Finnhub
+    private final ExpiringCache<String, QuoteResponse> quoteCache;
 
     private final String finnhubBaseUrl;
     private final String finnhubApiToken;
@@ -63,7 +68,12 @@ public class FinnhubService {
             String finnhubBaseUrl,
             String finnhubApiToken,
             Set<String> exchanges,
+            long searchTimeoutMillis,
+            ExpiringCache<String, QuoteResponse> quoteCache,
             RestTemplate restTemplate) {
+        this.stocksSearchableMap = new SearchableMap<>(
+                StockResponse::getSearch, SearchBudget.ofMillis(searchTimeoutMillis));
+        this.quoteCache = quoteCache;
         this.finnhubBaseUrl = finnhubBaseUrl;
         this.exchanges = exchanges;
         this.finnhubApiToken = finnhubApiToken;
@@ -75,16 +85,12 @@ public class FinnhubService {
         return null != stocksSearchableMap.get(stock.toLowerCase());
     }
 
+    /**
+     * Quotes are cached for a while, and concurrent requests for the price of the same stock
+     * wait for a single request to Finnhub
+     */
     public StockPrice getPrice(String symbol) {
-        if (!stockExists(symbol)) {
-            throw new StockNotFoundException(symbol);
-        }
-
-        ResponseEntity<QuoteResponse> response = restTemplate.getForEntity(
-                buildQuoteUrl(symbol),
-                QuoteResponse.class);
-
-        QuoteResponse quote = response.getBody();
+        QuoteResponse quote = getQuote(symbol);
 
         StockResponse stockInfo = stocksSearchableMap.get(symbol.toLowerCase());
 
@@ -95,12 +101,71 @@ public class FinnhubService {
                 quote.dp());
     }
 
-    public List<StockResponse> searchStocks(String search, int limit) {
-        return stocksSearchableMap
-                .searchBySubstringFuzzy(search.toLowerCase(), search.length() > 3 ? 1 : 0)
-                .stream()
-                .limit(limit)
-                .collect(Collectors.toList());
+    /**
+     * The close price of a stock on the previous trading day, to compute the change of the prices of its trades
+     */
+    public double getPreviousClose(String symbol) {
+        return getQuote(symbol).pc();
+    }
+
+    /**
+     * The price of a stock as of a trade, e.g. streamed by Finnhub, with its change since the previous close.
+     * Makes no request to Finnhub.
+     */
+    public StockPrice getPriceOfTrade(String symbol, double tradePrice, double previousClose) {
+        StockResponse stockInfo = stocksSearchableMap.get(symbol.toLowerCase());
+        if (stockInfo == null) {
+            throw new StockNotFoundException(symbol);
+        }
+
+        return new StockPrice(
+                stockInfo.symbol(),
+                stockInfo.currency(),
+                tradePrice,
+                previousClose == 0 ? 0 : (tradePrice - previousClose) / previousClose * 100);
+    }
+
+    public ExpiringCache.Stats getQuoteCacheStats() {
+        return quoteCache.stats();
+    }
+
+    private QuoteResponse getQuote(String symbol) {
+        if (!stockExists(symbol)) {
+            throw new StockNotFoundException(symbol);
+        }
+
+        return quoteCache.get(symbol.toLowerCase(), key -> restTemplate
+                .getForEntity(buildQuoteUrl(symbol), QuoteResponse.class)
+                .getBody());
+    }
+
+    /**
+     * A search of several words, like "bank of america", looks for each word on its own,
+     * and returns the stocks matching the most words first.
+     * Returns at once: the searches run on the trie's threads, and complete the future.
+     * A search that runs out of time returns the stocks found so far, and is logged.
+     */
+    public CompletableFuture<List<StockResponse>> searchStocks(String search, int limit) {
+        List<String> tokens = Arrays.stream(search.toLowerCase().split(" "))
+                .filter(s -> !s.isBlank())
+                .distinct()
+                .toList();
+
+        CompletableFuture<SearchableMap.SearchResults<StockResponse>> results = tokens.size() > 1
+                ? stocksSearchableMap.searchByTokensFuzzyAsync(tokens, FinnhubService::errorToleranceFor, limit)
+                : stocksSearchableMap.searchBySubstringFuzzyAsync(search.toLowerCase(), errorToleranceFor(search), limit);
+
+        return results.thenApply(searchResults -> {
+            if (searchResults.truncated()) {
+                logger.warn("The search for \"" + search + "\" ran out of time; returning the "
+                        + searchResults.values().size() + " stocks found so far");
+            }
+            return searchResults.values();
+        });
+    }
+
+    private static int errorToleranceFor(String search) {
+        return search.length() > 3 ? 1 : 0;
     }
 
     private String buildQuoteUrl(String stock) {
@@ -121,8 +186,11 @@ public class FinnhubService {
 
             logger.info("Done fetching stocks.");
 
-            Arrays.stream(response.getBody())
-                    .forEach(stock -> stocksSearchableMap.put(stock.symbol().toLowerCase(), stock));
+            stocksSearchableMap.putAll(Arrays.stream(response.getBody())
+                    .collect(Collectors.toMap(
+                            stock -> stock.symbol().toLowerCase(),
+                            stock -> stock,
+                            (previous, stock) -> stock)));
         });
     }
 }
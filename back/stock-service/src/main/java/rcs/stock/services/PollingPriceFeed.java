@@ -0,0 +1,69 @@
+package rcs.stock.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rcs.stock.models.StockPrice;
+
+import java.util.Collection;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Asks Finnhub for the price of each stock followed, at a fixed rate: prices are at most that old.
+ * Each stock is fetched once per poll, however many times it is followed, in parallel, on a bounded number
+ * of threads. A poll waits for all of them, so that polls do not overlap.
+ */
+public class PollingPriceFeed implements PriceFeed {
+
+    private final Logger logger = LoggerFactory.getLogger(PollingPriceFeed.class);
+
+    private final FinnhubService finnhubService;
+    private final long pollRateMillis;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    // bounds the number of requests for prices made to Finnhub at once
+    private final ExecutorService priceFetchExecutor;
+
+    public PollingPriceFeed(FinnhubService finnhubService, long pollRateMillis, int priceFetchConcurrency) {
+        this.finnhubService = finnhubService;
+        this.pollRateMillis = pollRateMillis;
+        this.priceFetchExecutor = Executors.newFixedThreadPool(priceFetchConcurrency);
+    }
+
+    @Override
+    public void start(Supplier<Collection<String>> symbols, Consumer<StockPrice> listener) {
+        scheduler.scheduleAtFixedRate(() -> {
+            // an exception would cancel all the polls to come
+            try {
+                poll(symbols.get(), listener);
+            } catch (RuntimeException e) {
+                logger.warn("Could not poll prices", e);
+            }
+        }, 0, pollRateMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        scheduler.shutdownNow();
+        priceFetchExecutor.shutdownNow();
+    }
+
+    void poll(Collection<String> symbols, Consumer<StockPrice> listener) {
+        logger.info("Polling prices");
+
+        CompletableFuture<?>[] fetches = symbols.stream()
+                .distinct()
+                .map(symbol -> CompletableFuture
+                        .supplyAsync(() -> finnhubService.getPrice(symbol), priceFetchExecutor)
+                        .thenAccept(listener)
+                        .exceptionally(e -> {
+                            logger.warn("Could not fetch the price of " + symbol, e);
+                            return null;
+                        }))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(fetches).join();
+    }
+}
@@ -0,0 +1,19 @@
+package rcs.stock.services;
+
+import rcs.stock.models.StockPrice;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A source of stock prices, pushed to a listener as they arrive.
+ * The stocks to follow are asked from `symbols` whenever the feed needs them, so they can change at any time.
+ * The listener may be called from any thread, and the same price may be pushed more than once.
+ */
+public interface PriceFeed {
+
+    void start(Supplier<Collection<String>> symbols, Consumer<StockPrice> listener);
+
+    void stop();
+}
@@ -0,0 +1,244 @@
+package rcs.stock.services;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rcs.stock.models.StockPrice;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.*;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a WebSocket open to Finnhub's trade stream, and pushes the price of each trade as it arrives,
+ * instead of asking for every price at a fixed rate.
+ * <p>
+ * Every `syncRateMillis`, the stocks followed are compared with those subscribed on the stream,
+ * to subscribe to the new ones and unsubscribe from the others; if the stream was closed,
+ * it is opened again instead, and all the stocks followed are subscribed again.
+ * Of the trades of a stock received in a single message, only the last one is pushed.
+ * <p>
+ * The change of a price is computed from the previous close of the stock, asked from Finnhub before
+ * subscribing to it, and again once it is older than `previousCloseTtlMillis`, by the scheduler: the trades
+ * are pushed on the stream's thread without asking Finnhub for anything, so they are never held up by it.
+ */
+public class StreamingPriceFeed implements PriceFeed {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Trade(
+            String s,  // symbol
+            double p,  // price
+            long t,    // timestamp
+            double v){} // volume
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record StreamMessage(String type, List<Trade> data){}
+
+    record SubscriptionMessage(String type, String symbol){}
+
+    private record PreviousClose(double price, long fetchedAtMillis){}
+
+    private final Logger logger = LoggerFactory.getLogger(StreamingPriceFeed.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final URI streamUri;
+    private final FinnhubService finnhubService;
+    private final long syncRateMillis;
+    private final long previousCloseTtlMillis;
+    private final HttpClient httpClient;
+
+    // also serializes the messages sent on the stream, which must not overlap
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private volatile Supplier<Collection<String>> symbols;
+    private volatile Consumer<StockPrice> listener;
+
+    // the stream, once open, and the stocks subscribed on it; only changed by the scheduler
+    private volatile WebSocket webSocket;
+    private final Set<String> subscribedSymbols = new HashSet<>();
+
+    // of the stocks subscribed, or being subscribed; read by the stream's thread
+    private final Map<String, PreviousClose> previousCloses = new ConcurrentHashMap<>();
+    private boolean connecting = false;
+
+    public StreamingPriceFeed(
+            URI streamUri,
+            FinnhubService finnhubService,
+            long syncRateMillis,
+            long previousCloseTtlMillis) {
+        this.streamUri = streamUri;
+        this.finnhubService = finnhubService;
+        this.syncRateMillis = syncRateMillis;
+        this.previousCloseTtlMillis = previousCloseTtlMillis;
+        this.httpClient = HttpClient.newHttpClient();
+    }
+
+    @Override
+    public void start(Supplier<Collection<String>> symbols, Consumer<StockPrice> listener) {
+        this.symbols = symbols;
+        this.listener = listener;
+        scheduler.scheduleWithFixedDelay(this::sync, 0, syncRateMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        scheduler.shutdownNow();
+        Optional.ofNullable(webSocket).ifPresent(WebSocket::abort);
+    }
+
+    private void sync() {
+        // an exception would cancel all the syncs to come
+        try {
+            syncSubscriptions();
+        } catch (RuntimeException e) {
+            logger.warn("Could not sync the subscriptions of the price stream", e);
+        }
+    }
+
+    private void syncSubscriptions() {
+        if (webSocket == null || webSocket.isInputClosed() || webSocket.isOutputClosed()) {
+            connect();
+            return;
+        }
+
+        Set<String> followedSymbols = symbols.get().stream()
+                .map(String::toUpperCase)
+                .collect(Collectors.toSet());
+
+        // a stock whose previous close could not be fetched is subscribed at a later sync
+        for (String symbol : followedSymbols) {
+            if (refreshPreviousClose(symbol) && subscribedSymbols.add(symbol)) {
+                send(new SubscriptionMessage("subscribe", symbol));
+            }
+        }
+
+        subscribedSymbols.stream()
+                .filter(symbol -> !followedSymbols.contains(symbol))
+                .toList()
+                .forEach(symbol -> {
+                    send(new SubscriptionMessage("unsubscribe", symbol));
+                    subscribedSymbols.remove(symbol);
+                });
+        previousCloses.keySet().retainAll(followedSymbols);
+    }
+
+    // returns whether the stock has a previous close, even an old one that could not be fetched again
+    private boolean refreshPreviousClose(String symbol) {
+        PreviousClose previousClose = previousCloses.get(symbol);
+        long now = System.currentTimeMillis();
+        if (previousClose != null && now - previousClose.fetchedAtMillis() < previousCloseTtlMillis) {
+            return true;
+        }
+
+        try {
+            previousCloses.put(symbol, new PreviousClose(finnhubService.getPreviousClose(symbol), now));
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Could not fetch the previous close of " + symbol, e);
+            return previousClose != null;
+        }
+    }
+
+    private void connect() {
+        if (connecting) {
+            return;
+        }
+
+        logger.info("Opening the price stream");
+        connecting = true;
+        httpClient.newWebSocketBuilder()
+                .buildAsync(streamUri, new StreamListener())
+                .whenComplete((openWebSocket, e) -> {
+                    if (e != null) {
+                        logger.warn("Could not open the price stream", e);
+                    }
+                    scheduler.execute(() -> {
+                        webSocket = openWebSocket;
+                        subscribedSymbols.clear();
+                        connecting = false;
+                        // subscribes at once, rather than at the next sync
+                        if (openWebSocket != null) {
+                            sync();
+                        }
+                    });
+                });
+    }
+
+    private void send(SubscriptionMessage message) {
+        try {
+            webSocket.sendText(objectMapper.writeValueAsString(message), true).join();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private class StreamListener implements WebSocket.Listener {
+
+        // a message may arrive in parts
+        private final StringBuilder message = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            message.append(data);
+            if (last) {
+                onMessage(message.toString());
+                message.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            logger.warn("The price stream was closed: " + statusCode + " " + reason);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            logger.warn("The price stream failed", error);
+        }
+
+        private void onMessage(String text) {
+            StreamMessage streamMessage;
+            try {
+                streamMessage = objectMapper.readValue(text, StreamMessage.class);
+            } catch (JsonProcessingException e) {
+                logger.warn("Could not read a message of the price stream: " + text, e);
+                return;
+            }
+
+            if (!"trade".equals(streamMessage.type()) || streamMessage.data() == null) {
+                return;
+            }
+
+            Map<String, Trade> lastTrades = new LinkedHashMap<>();
+            streamMessage.data().forEach(trade -> lastTrades.put(trade.s(), trade));
+
+            lastTrades.values().forEach(trade -> {
+                PreviousClose previousClose = previousCloses.get(trade.s());
+                if (previousClose == null) {
+                    // the stock was unsubscribed in the meantime
+                    return;
+                }
+                try {
+                    listener.accept(finnhubService.getPriceOfTrade(trade.s(), trade.p(), previousClose.price()));
+                } catch (RuntimeException e) {
+                    logger.warn("Could not push the price of a trade of " + trade.s(), e);
+                }
+            });
+        }
+    }
+}
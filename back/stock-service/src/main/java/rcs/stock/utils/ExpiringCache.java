@@ -0,0 +1,127 @@
+package rcs.stock.utils;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Values are loaded on a miss, and kept for their time to live, counted from when they started loading,
+ * up to a maximum number of them, evicting the least recently used first.
+ * <p>
+ * Concurrent misses for the same key are coalesced: the first caller loads the value, while the others wait
+ * for it instead of loading it again (a.k.a. single-flight). A value that failed to load, or that loaded
+ * as null, is not kept, so the next call loads it again; the callers that were waiting for it get the same
+ * exception, or null.
+ * Values are loaded outside of the lock, so loading one value does not block getting any other.
+ */
+public class ExpiringCache<K, V> {
+
+    public record Stats(
+            long hits,      // values found loaded
+            long misses,    // values loaded
+            long coalesced, // values found loading, and waited for
+            int size) { }
+
+    private record Entry<V>(CompletableFuture<V> value, long loadedAt) { }
+
+    private final long timeToLiveNanos;
+
+    private final LongSupplier nanoClock;
+
+    // in access order, least recently used first; guarded by itself
+    private final Map<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public ExpiringCache(Duration timeToLive, int maximumSize) {
+        this(timeToLive, maximumSize, System::nanoTime);
+    }
+
+    ExpiringCache(Duration timeToLive, int maximumSize, LongSupplier nanoClock) {
+        if (timeToLive.isNegative() || maximumSize < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        Entry<V> entry;
+        Entry<V> loading = null;
+
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null || isExpired(entry)) {
+                loading = new Entry<>(new CompletableFuture<>(), nanoClock.getAsLong());
+                entries.put(key, loading);
+            }
+        }
+
+        if (loading == null) {
+            (entry.value().isDone() ? hits : coalesced).increment();
+            return join(entry.value());
+        }
+
+        misses.increment();
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (Throwable e) {
+            // errors too, or the callers waiting for the value would wait forever
+            remove(key, loading);
+            loading.value().completeExceptionally(e);
+            throw e;
+        }
+
+        if (value == null) {
+            remove(key, loading);
+        }
+        loading.value().complete(value);
+        return value;
+    }
+
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits.sum(), misses.sum(), coalesced.sum(), entries.size());
+        }
+    }
+
+    private void remove(K key, Entry<V> entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return nanoClock.getAsLong() - entry.loadedAt() >= timeToLiveNanos;
+    }
+
+    // rethrows the exception the loader threw, as the caller that loaded it did
+    private static <V> V join(CompletableFuture<V> value) {
+        try {
+            return value.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
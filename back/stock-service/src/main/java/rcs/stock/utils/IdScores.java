@@ -0,0 +1,111 @@
+package rcs.stock.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * The scores of the ids found by a search by tokens, in an open-addressing hash table:
+ * it only takes room for the ids that the posting lists of the terms found actually hold,
+ * however many ids the map has given out.
+ * Each id is scored at most once per token, by the first of its terms found for that token.
+ * Not thread-safe: each search has its own.
+ */
+class IdScores {
+
+    private static final int EMPTY = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] ids = newIds(INITIAL_CAPACITY);
+
+    private long[] scores = new long[INITIAL_CAPACITY];
+
+    // the token each id was last scored for, so that later terms of the same token do not score it again
+    private int[] tokens = new int[INITIAL_CAPACITY];
+
+    private int size = 0;
+
+    /**
+     * Adds the score to the id, unless the id was already scored for this token;
+     * tokens must be scored one after the other, each with its best terms first
+     */
+    public void addOnce(int id, int token, long score) {
+        int slot = slotOf(id, ids);
+        if (ids[slot] == EMPTY) {
+            ids[slot] = id;
+            scores[slot] = score;
+            tokens[slot] = token;
+            if (++size * 2 > ids.length) {
+                grow();
+            }
+        } else if (tokens[slot] != token) {
+            scores[slot] += score;
+            tokens[slot] = token;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The ids with the best `limit` scores, best first; smaller ids, given to older keys, win ties.
+     * Only `limit` ids are kept in the heap at any time.
+     */
+    public int[] best(int limit) {
+        // the worst of the best ids at the head, to be dropped when a better one is found
+        PriorityQueue<Integer> best = new PriorityQueue<>(Comparator
+                .<Integer>comparingLong(slot -> scores[slot])
+                .thenComparing(slot -> ids[slot], Comparator.reverseOrder()));
+        for (int slot = 0; slot < ids.length && limit > 0; slot++) {
+            if (ids[slot] != EMPTY) {
+                best.add(slot);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+
+        int[] bestIds = new int[best.size()];
+        for (int i = bestIds.length - 1; i >= 0; i--) {
+            bestIds[i] = ids[best.poll()];
+        }
+        return bestIds;
+    }
+
+    private void grow() {
+        int[] oldIds = ids;
+        long[] oldScores = scores;
+        int[] oldTokens = tokens;
+
+        ids = newIds(oldIds.length * 2);
+        scores = new long[oldIds.length * 2];
+        tokens = new int[oldIds.length * 2];
+        for (int oldSlot = 0; oldSlot < oldIds.length; oldSlot++) {
+            if (oldIds[oldSlot] != EMPTY) {
+                int slot = slotOf(oldIds[oldSlot], ids);
+                ids[slot] = oldIds[oldSlot];
+                scores[slot] = oldScores[oldSlot];
+                tokens[slot] = oldTokens[oldSlot];
+            }
+        }
+    }
+
+    // linear probing from a spread of the id, since consecutive ids would otherwise fill consecutive slots
+    private static int slotOf(int id, int[] ids) {
+        int mask = ids.length - 1;
+        int hash = id * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (ids[slot] != EMPTY && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int[] newIds(int capacity) {
+        int[] ids = new int[capacity];
+        Arrays.fill(ids, EMPTY);
+        return ids;
+    }
+}
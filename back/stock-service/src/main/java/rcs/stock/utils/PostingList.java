@@ -0,0 +1,233 @@
+package rcs.stock.utils;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * The ids of the keys indexed by a search term, either as a sorted array of ints, 4 bytes per id,
+ * or, once that would take more memory, as a bitmap of all ids up to the largest, 1 bit per id:
+ * a term like "inc", shared by a large part of the keys, is then a fraction of the size,
+ * and merged with other posting lists a machine word at a time.
+ * The ids are copied on write, so readers get a consistent snapshot without locking,
+ * but writers must be serialized.
+ */
+public class PostingList {
+
+    // either a sorted int[] or a long[] bitmap, never modified once published
+    private volatile Object ids;
+
+    public PostingList(int[] sortedIds) {
+        this.ids = compact(sortedIds);
+    }
+
+    /**
+     * A copy of the ids, sorted
+     */
+    public int[] ids() {
+        Object current = ids;
+        return current instanceof long[] bitmap ? toArray(bitmap) : ((int[]) current).clone();
+    }
+
+    public int size() {
+        Object current = ids;
+        return current instanceof long[] bitmap ? cardinality(bitmap) : ((int[]) current).length;
+    }
+
+    public boolean isEmpty() {
+        // a bitmap is turned back into an array long before it gets empty
+        return ids instanceof int[] array && array.length == 0;
+    }
+
+    public boolean isBitmap() {
+        return ids instanceof long[];
+    }
+
+    public boolean contains(int id) {
+        Object current = ids;
+        if (current instanceof long[] bitmap) {
+            return (id >>> 6) < bitmap.length && (bitmap[id >>> 6] & (1L << id)) != 0;
+        }
+        return Arrays.binarySearch((int[]) current, id) >= 0;
+    }
+
+    public void add(int id) {
+        Object current = ids;
+        if (current instanceof long[] bitmap) {
+            long[] updated = Arrays.copyOf(bitmap, Math.max(bitmap.length, (id >>> 6) + 1));
+            updated[id >>> 6] |= 1L << id;
+            ids = compact(updated);
+            return;
+        }
+
+        int[] array = (int[]) current;
+        int index = Arrays.binarySearch(array, id);
+        if (index >= 0) {
+            return;
+        }
+
+        int insertionPoint = -index - 1;
+        int[] updated = new int[array.length + 1];
+        System.arraycopy(array, 0, updated, 0, insertionPoint);
+        updated[insertionPoint] = id;
+        System.arraycopy(array, insertionPoint, updated, insertionPoint + 1, array.length - insertionPoint);
+        ids = compact(updated);
+    }
+
+    /**
+     * Adds all the ids at once, merging them in a single copy
+     */
+    public void addAll(int[] sortedIds) {
+        if (sortedIds.length == 0) {
+            return;
+        }
+
+        Object current = ids;
+        if (current instanceof long[] bitmap) {
+            long[] updated = Arrays.copyOf(bitmap, Math.max(bitmap.length, (sortedIds[sortedIds.length - 1] >>> 6) + 1));
+            for (int id : sortedIds) {
+                updated[id >>> 6] |= 1L << id;
+            }
+            ids = compact(updated);
+            return;
+        }
+
+        int[] array = (int[]) current;
+        int[] merged = new int[array.length + sortedIds.length];
+        int i = 0, j = 0, size = 0;
+        while (i < array.length || j < sortedIds.length) {
+            int next;
+            if (j == sortedIds.length || (i < array.length && array[i] <= sortedIds[j])) {
+                next = array[i++];
+            } else {
+                next = sortedIds[j++];
+            }
+            if (size == 0 || merged[size - 1] != next) {
+                merged[size++] = next;
+            }
+        }
+        ids = compact(size == merged.length ? merged : Arrays.copyOf(merged, size));
+    }
+
+    public void remove(int id) {
+        Object current = ids;
+        if (current instanceof long[] bitmap) {
+            if ((id >>> 6) >= bitmap.length || (bitmap[id >>> 6] & (1L << id)) == 0) {
+                return;
+            }
+            long[] updated = bitmap.clone();
+            updated[id >>> 6] &= ~(1L << id);
+            ids = compact(updated);
+            return;
+        }
+
+        int[] array = (int[]) current;
+        int index = Arrays.binarySearch(array, id);
+        if (index < 0) {
+            return;
+        }
+
+        int[] updated = new int[array.length - 1];
+        System.arraycopy(array, 0, updated, 0, index);
+        System.arraycopy(array, index + 1, updated, index, array.length - index - 1);
+        ids = updated;
+    }
+
+    /**
+     * Passes all the ids to `action` in order
+     */
+    public void forEach(IntConsumer action) {
+        Object current = ids;
+        if (current instanceof long[] bitmap) {
+            for (int word = 0; word < bitmap.length; word++) {
+                for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+                    action.accept((word << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+            return;
+        }
+
+        for (int id : (int[]) current) {
+            action.accept(id);
+        }
+    }
+
+    /**
+     * Passes the ids that are not in `seen` to `action` in order, adding them to `seen`, until `action` returns false;
+     * returns false if it did. `seen` is a bitmap shared by the posting lists being merged:
+     * ids beyond its size are skipped.
+     */
+    public boolean forEachUnseen(long[] seen, IntPredicate action) {
+        Object current = ids;
+        if (current instanceof long[] bitmap) {
+            for (int word = 0; word < Math.min(bitmap.length, seen.length); word++) {
+                long unseen = bitmap[word] & ~seen[word];
+                seen[word] |= unseen;
+                while (unseen != 0) {
+                    if (!action.test((word << 6) + Long.numberOfTrailingZeros(unseen))) {
+                        return false;
+                    }
+                    unseen &= unseen - 1;
+                }
+            }
+            return true;
+        }
+
+        for (int id : (int[]) current) {
+            if ((id >>> 6) >= seen.length) {
+                break;
+            }
+            long bit = 1L << id;
+            if ((seen[id >>> 6] & bit) == 0) {
+                seen[id >>> 6] |= bit;
+                if (!action.test(id)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // a bitmap if it is smaller than the array: 64 bits per word of the bitmap against 32 bits per id
+    private static Object compact(int[] sortedIds) {
+        if (sortedIds.length == 0) {
+            return sortedIds;
+        }
+
+        int words = (sortedIds[sortedIds.length - 1] >>> 6) + 1;
+        if (sortedIds.length <= 2 * words) {
+            return sortedIds;
+        }
+
+        long[] bitmap = new long[words];
+        for (int id : sortedIds) {
+            bitmap[id >>> 6] |= 1L << id;
+        }
+        return bitmap;
+    }
+
+    // an array once half as dense as when it became a bitmap, so that alternately adding and removing an id
+    // does not convert it back and forth
+    private static Object compact(long[] bitmap) {
+        return cardinality(bitmap) < bitmap.length ? toArray(bitmap) : bitmap;
+    }
+
+    private static int[] toArray(long[] bitmap) {
+        int[] array = new int[cardinality(bitmap)];
+        int size = 0;
+        for (int word = 0; word < bitmap.length; word++) {
+            for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+                array[size++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return array;
+    }
+
+    private static int cardinality(long[] bitmap) {
+        int cardinality = 0;
+        for (long bits : bitmap) {
+            cardinality += Long.bitCount(bits);
+        }
+        return cardinality;
+    }
+}
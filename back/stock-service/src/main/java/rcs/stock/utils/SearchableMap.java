@@ -1,31 +1,142 @@
 package rcs.stock.utils;
 
 import com.rcs.trie.FuzzyMatchingStrategy;
+import com.rcs.trie.SearchBudget;
 import com.rcs.trie.Trie;
 import com.rcs.trie.TrieSearchResult;
+import com.rcs.trie.TrieSearchResults;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.ToIntFunction;
 
+/**
+ * Each key is given an int id, and each search term is indexed in the trie with the posting list
+ * of the ids of the keys whose values have it, so that re-putting a key only adds or removes its own id
+ * from the posting lists of the search terms that changed, and the posting lists of the terms found by
+ * a search are merged with bitwise operations.
+ * <p>
+ * Safe for concurrent readers and writers, and readers never block:
+ * the map, the trie and the posting lists in the trie can all be read while they are updated.
+ * Writers to the same key, or to the same search term, are serialized by striped locks;
+ * a key's lock is always taken before any search term's lock, so writers never deadlock.
+ * <p>
+ * Each search is given the search budget: once it runs out, the values of the terms found so far are returned,
+ * flagged as truncated, so a search matching most of the trie cannot hold its caller's thread, or the threads
+ * shared by all searches, for long. The timeout is shared by all the searches in the trie made for a single call,
+ * each asking for more terms with what is left of it; the number of visited states is counted for each of them.
+ */
 public class SearchableMap<K, V> {
 
-    private final Map<K, V> map = new HashMap<>();
+    /**
+     * The values found, best first, and whether the search ran out of its budget,
+     * so that some values may be missing, or better values may have been found
+     */
+    public record SearchResults<V>(List<V> values, boolean truncated) { }
 
-    // maps search terms to a set of keys in the map above
-    private final Trie<Set<K>> trie = new Trie<>();
+    private static final int LOCK_STRIPES = 64;
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final Map<K, V> map = new ConcurrentHashMap<>();
+
+    // maps search terms to the ids of keys in the map above;
+    // compressed, because most search terms are words whose characters form chains without branches
+    private final Trie<PostingList> trie = new Trie<>(true);
+
+    private final Map<K, Integer> ids = new ConcurrentHashMap<>();
+
+    // the key of each id: ids are given in order, and never reused
+    private volatile Object[] keysById = new Object[16];
+
+    private int nextId = 0;
+
+    private final Lock[] keyLocks = newLockStripes();
+
+    private final Lock[] searchTermLocks = newLockStripes();
 
     // extracts search terms to be indexed in the trie
     private final Function<V, Collection<String>> searchTermsExtractor;
 
+    private final SearchBudget searchBudget;
+
     public SearchableMap(Function<V, Collection<String>> searchTermsExtractor) {
+        this(searchTermsExtractor, SearchBudget.UNLIMITED);
+    }
+
+    public SearchableMap(Function<V, Collection<String>> searchTermsExtractor, SearchBudget searchBudget) {
         this.searchTermsExtractor = searchTermsExtractor;
+        this.searchBudget = searchBudget;
     }
 
     public void put(K key, V value) {
-        V previousValue = map.put(key, value);
-        removeIndex(previousValue);
-        addIndex(value, key);
+        Lock keyLock = stripeFor(keyLocks, key);
+        keyLock.lock();
+        try {
+            int id = idOf(key);
+            Set<String> previousSearchTerms = searchTermsOf(map.put(key, value));
+            Set<String> searchTerms = searchTermsOf(value);
+
+            previousSearchTerms.stream()
+                    .filter(searchTerm -> !searchTerms.contains(searchTerm))
+                    .forEach(searchTerm -> removeFromIndex(searchTerm, id));
+
+            searchTerms.stream()
+                    .filter(searchTerm -> !previousSearchTerms.contains(searchTerm))
+                    .forEach(searchTerm -> addToIndex(searchTerm, id));
+        } finally {
+            keyLock.unlock();
+        }
+    }
+
+    /**
+     * Puts all entries at once, merging all their ids into each posting list at once,
+     * and indexing all new search terms in a single bulk update of the trie.
+     * Takes all the locks, so other writers wait for it, but readers do not.
+     */
+    public void putAll(Map<K, V> entries) {
+        lockAll(keyLocks);
+        lockAll(searchTermLocks);
+        try {
+            Map<String, List<Integer>> idsToAddBySearchTerm = new HashMap<>();
+
+            entries.forEach((key, value) -> {
+                int id = idOf(key);
+                Set<String> previousSearchTerms = searchTermsOf(map.put(key, value));
+                Set<String> searchTerms = searchTermsOf(value);
+
+                previousSearchTerms.stream()
+                        .filter(searchTerm -> !searchTerms.contains(searchTerm))
+                        .forEach(searchTerm -> removeFromIndex(searchTerm, id));
+
+                searchTerms.stream()
+                        .filter(searchTerm -> !previousSearchTerms.contains(searchTerm))
+                        .forEach(searchTerm -> idsToAddBySearchTerm
+                                .computeIfAbsent(searchTerm, t -> new ArrayList<>())
+                                .add(id));
+            });
+
+            Map<String, PostingList> newPostingLists = new HashMap<>();
+            idsToAddBySearchTerm.forEach((searchTerm, idsToAdd) -> {
+                int[] sortedIds = idsToAdd.stream().mapToInt(Integer::intValue).sorted().toArray();
+                PostingList postingList = trie.getExactly(searchTerm);
+                if (postingList != null) {
+                    postingList.addAll(sortedIds);
+                } else {
+                    newPostingLists.put(searchTerm, new PostingList(sortedIds));
+                }
+            });
+
+            trie.putAll(newPostingLists);
+        } finally {
+            unlockAll(searchTermLocks);
+            unlockAll(keyLocks);
+        }
     }
 
     public V get(K key) {
@@ -33,28 +144,298 @@ public class SearchableMap<K, V> {
     }
 
     public List<V> searchBySubstringFuzzy(String search, int errorTolerance) {
-        return trie.matchBySubstringFuzzy(search, errorTolerance, FuzzyMatchingStrategy.LIBERAL)
-                .stream()
-                .map(TrieSearchResult::getValue)
-                .flatMap(Collection::stream)
-                .distinct()
-                .map(map::get)
-                .collect(Collectors.toList());
-    }
-
-    private void removeIndex(V value) {
-        Optional.ofNullable(value)
-                .ifPresent(v -> searchTermsExtractor.apply(v)
-                        .forEach(trie::remove));
-    }
-
-    private void addIndex(V value, K key) {
-        searchTermsExtractor.apply(value)
-                .forEach(searchTerm -> {
-                    Set<K> newKeys = Optional.ofNullable(trie.getExactly(searchTerm))
-                            .orElse(new HashSet<>());
-                    newKeys.add(key);
-                    trie.put(searchTerm, newKeys);
+        return searchBySubstringFuzzy(search, errorTolerance, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most `limit` values, best match first.
+     * Only the best search terms are asked from the trie, but a value may be found by more than one of them,
+     * so we ask for more terms until we have enough values, or there are no more terms.
+     */
+    public List<V> searchBySubstringFuzzy(String search, int errorTolerance, int limit) {
+        return searchBySubstringFuzzyAsync(search, errorTolerance, limit).join().values();
+    }
+
+    /**
+     * Same as above, but the searches run on the trie's threads, so the calling thread is not blocked
+     */
+    public CompletableFuture<SearchResults<V>> searchBySubstringFuzzyAsync(
+            String search, int errorTolerance, int limit) {
+
+        if (limit == 0) {
+            return CompletableFuture.completedFuture(new SearchResults<>(List.of(), false));
+        }
+
+        return searchBySubstringFuzzyAsync(search, errorTolerance, limit, limit, deadlineOf(searchBudget), null);
+    }
+
+    private CompletableFuture<SearchResults<V>> searchBySubstringFuzzyAsync(
+            String search, int errorTolerance, int limit, int termsLimit, long deadline, SearchResults<V> previous) {
+
+        return trie.matchBySubstringFuzzyAsync(
+                        search, errorTolerance, FuzzyMatchingStrategy.LIBERAL, termsLimit, remainingBudget(deadline))
+                .thenCompose(searchResults -> {
+                    SearchResults<V> results = mostOf(previous, new SearchResults<>(
+                            valuesOf(searchResults.getResults(), limit), searchResults.getTruncated()));
+
+                    if (hasEnoughValues(searchResults, results.values(), termsLimit, limit)) {
+                        return CompletableFuture.completedFuture(results);
+                    }
+                    if (isPast(deadline)) {
+                        return CompletableFuture.completedFuture(new SearchResults<>(results.values(), true));
+                    }
+
+                    return searchBySubstringFuzzyAsync(
+                            search, errorTolerance, limit, moreTerms(termsLimit), deadline, results);
+                });
+    }
+
+    /**
+     * Returns at most `limit` values, those matching the most tokens first, then those matching them best.
+     * Each token is searched in the trie in parallel, then each value is scored once per token it matches,
+     * by the first of its terms found for that token, and only the best `limit` values are kept.
+     * As above, only the best terms of each token are asked from the trie, and more of them
+     * until we have enough values, or there are no more terms.
+     */
+    public List<V> searchByTokensFuzzy(Collection<String> tokens, ToIntFunction<String> errorTolerance, int limit) {
+        return searchByTokensFuzzyAsync(tokens, errorTolerance, limit).join().values();
+    }
+
+    /**
+     * Same as above, but the searches run on the trie's threads, so the calling thread is not blocked
+     */
+    public CompletableFuture<SearchResults<V>> searchByTokensFuzzyAsync(
+            Collection<String> tokens, ToIntFunction<String> errorTolerance, int limit) {
+
+        if (limit == 0 || tokens.isEmpty()) {
+            return CompletableFuture.completedFuture(new SearchResults<>(List.of(), false));
+        }
+
+        List<String> distinctTokens = tokens.stream().distinct().toList();
+        return searchByTokensFuzzyAsync(
+                distinctTokens,
+                errorTolerance,
+                limit,
+                limit,
+                deadlineOf(searchBudget),
+                Collections.nCopies(distinctTokens.size(), null),
+                0,
+                null);
+    }
+
+    private CompletableFuture<SearchResults<V>> searchByTokensFuzzyAsync(
+            List<String> tokens,
+            ToIntFunction<String> errorTolerance,
+            int limit,
+            int termsLimit,
+            long deadline,
+            List<TrieSearchResults<PostingList>> previousResultsByToken,
+            int previousTermsLimit,
+            SearchResults<V> previous) {
+
+        // the tokens whose terms were all found already are not searched again
+        SearchBudget budget = remainingBudget(deadline);
+        List<CompletableFuture<TrieSearchResults<PostingList>>> searches = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            TrieSearchResults<PostingList> previousResults = previousResultsByToken.get(i);
+            searches.add(previousResults != null && foundAllTerms(previousResults, previousTermsLimit)
+                    ? CompletableFuture.completedFuture(previousResults)
+                    : trie.matchBySubstringFuzzyAsync(
+                            token, errorTolerance.applyAsInt(token), FuzzyMatchingStrategy.LIBERAL,
+                            termsLimit, budget));
+        }
+
+        return CompletableFuture.allOf(searches.toArray(CompletableFuture[]::new))
+                .thenCompose(done -> {
+                    List<TrieSearchResults<PostingList>> resultsByToken = searches.stream()
+                            .map(CompletableFuture::join)
+                            .toList();
+                    SearchResults<V> results = mostOf(previous, new SearchResults<>(
+                            bestValuesOf(resultsByToken.stream().map(TrieSearchResults::getResults).toList(), limit),
+                            resultsByToken.stream().anyMatch(TrieSearchResults::getTruncated)));
+
+                    if (results.values().size() == limit
+                            || resultsByToken.stream().allMatch(searchResults -> foundAllTerms(searchResults, termsLimit))) {
+                        return CompletableFuture.completedFuture(results);
+                    }
+                    if (isPast(deadline)) {
+                        return CompletableFuture.completedFuture(new SearchResults<>(results.values(), true));
+                    }
+
+                    return searchByTokensFuzzyAsync(
+                            tokens, errorTolerance, limit, moreTerms(termsLimit), deadline,
+                            resultsByToken, termsLimit, results);
                 });
     }
+
+    // a search that ran out of budget may have found fewer values than the one before it, with fewer terms
+    private static <V> SearchResults<V> mostOf(SearchResults<V> previous, SearchResults<V> current) {
+        if (previous != null && previous.values().size() > current.values().size()) {
+            return new SearchResults<>(previous.values(), true);
+        }
+        return current;
+    }
+
+    // all the searches of a call share the timeout of the budget, however many times they ask for more terms
+    private static long deadlineOf(SearchBudget searchBudget) {
+        return searchBudget.getTimeoutMillis() == SearchBudget.NO_LIMIT
+                ? NO_DEADLINE
+                : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchBudget.getTimeoutMillis());
+    }
+
+    private static boolean isPast(long deadline) {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+
+    private SearchBudget remainingBudget(long deadline) {
+        if (deadline == NO_DEADLINE) {
+            return searchBudget;
+        }
+        long remainingMillis = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        return new SearchBudget(remainingMillis, searchBudget.getMaxVisitedStates());
+    }
+
+    /**
+     * The values of the posting lists of the results, in order, without duplicates
+     */
+    private List<V> valuesOf(List<TrieSearchResult<PostingList>> results, int limit) {
+        List<V> values = new ArrayList<>();
+        // the union of the posting lists: keys put after the search started may be left out
+        long[] seen = new long[(keysById.length >>> 6) + 1];
+        for (TrieSearchResult<PostingList> result : results) {
+            boolean hasRoom = result.getValue().forEachUnseen(seen, id -> {
+                values.add(map.get(keyOf(id)));
+                return values.size() < limit;
+            });
+            if (!hasRoom) {
+                break;
+            }
+        }
+        return values;
+    }
+
+    private static boolean hasEnoughValues(
+            TrieSearchResults<PostingList> searchResults, List<?> values, int termsLimit, int limit) {
+
+        return values.size() == limit || foundAllTerms(searchResults, termsLimit);
+    }
+
+    // asking the trie for more terms would find no more: it had fewer, or the search ran out of budget
+    private static boolean foundAllTerms(TrieSearchResults<?> searchResults, int termsLimit) {
+        return searchResults.getResults().size() < termsLimit
+                || termsLimit == Integer.MAX_VALUE
+                || searchResults.getTruncated();
+    }
+
+    private static int moreTerms(int termsLimit) {
+        return termsLimit > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : termsLimit * 2;
+    }
+
+    private List<V> bestValuesOf(List<List<TrieSearchResult<PostingList>>> resultsByToken, int limit) {
+        // only the ids in the posting lists are scored, rather than every id of the map
+        IdScores scores = new IdScores();
+        for (int token = 0; token < resultsByToken.size(); token++) {
+            int currentToken = token;
+            for (TrieSearchResult<PostingList> result : resultsByToken.get(token)) {
+                long tokenScore = tokenScore(result);
+                result.getValue().forEach(id -> scores.addOnce(id, currentToken, tokenScore));
+            }
+        }
+
+        int[] bestIds = scores.best(limit);
+        List<V> values = new ArrayList<>(bestIds.length);
+        for (int id : bestIds) {
+            values.add(map.get(keyOf(id)));
+        }
+        return values;
+    }
+
+    // each token matched adds 2^32, less a penalty under 2^20 for how it matched,
+    // so that matching one more token always outweighs matching the others better
+    private static long tokenScore(TrieSearchResult<?> result) {
+        long penalty = Math.min(result.getNumberOfErrors(), 1000) * 1024L
+                + (result.getMatchedWholeWord() ? 0 : 512)
+                + Math.min(result.getPrefixDistance(), 511);
+        return (1L << 32) - penalty;
+    }
+
+    private Set<String> searchTermsOf(V value) {
+        return value == null ? Set.of() : new HashSet<>(searchTermsExtractor.apply(value));
+    }
+
+    private void addToIndex(String searchTerm, int id) {
+        withSearchTermLock(searchTerm, () -> {
+            PostingList postingList = trie.getExactly(searchTerm);
+            if (postingList != null) {
+                postingList.add(id);
+            } else {
+                trie.put(searchTerm, new PostingList(new int[] { id }));
+            }
+        });
+    }
+
+    private void removeFromIndex(String searchTerm, int id) {
+        withSearchTermLock(searchTerm, () -> {
+            PostingList postingList = trie.getExactly(searchTerm);
+            if (postingList == null) {
+                return;
+            }
+            postingList.remove(id);
+            if (postingList.isEmpty()) {
+                trie.remove(searchTerm);
+            }
+        });
+    }
+
+    private int idOf(K key) {
+        return ids.computeIfAbsent(key, this::newId);
+    }
+
+    private synchronized int newId(K key) {
+        int id = nextId++;
+        Object[] keys = keysById;
+        if (id == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        keys[id] = key;
+        // publishes the key of the new id, before the id is added to any posting list
+        keysById = keys;
+        return id;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyOf(int id) {
+        return (K) keysById[id];
+    }
+
+    private void withSearchTermLock(String searchTerm, Runnable runnable) {
+        Lock searchTermLock = stripeFor(searchTermLocks, searchTerm);
+        searchTermLock.lock();
+        try {
+            runnable.run();
+        } finally {
+            searchTermLock.unlock();
+        }
+    }
+
+    private static Lock[] newLockStripes() {
+        Lock[] locks = new Lock[LOCK_STRIPES];
+        Arrays.setAll(locks, i -> new ReentrantLock());
+        return locks;
+    }
+
+    private static Lock stripeFor(Lock[] locks, Object object) {
+        int hash = Objects.hashCode(object);
+        return locks[Math.floorMod(hash ^ (hash >>> 16), locks.length)];
+    }
+
+    // always in the same order, so that two threads locking all never deadlock
+    private static void lockAll(Lock[] locks) {
+        Arrays.stream(locks).forEach(Lock::lock);
+    }
+
+    private static void unlockAll(Lock[] locks) {
+        Arrays.stream(locks).forEach(Lock::unlock);
+    }
 }
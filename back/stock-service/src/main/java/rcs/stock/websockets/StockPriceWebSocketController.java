@@ -21,8 +21,11 @@ public class StockPriceWebSocketController {
     }
 
     @SubscribeMapping("/topic/stocks/{symbol}")
-    public StockPrice initialReply(@DestinationVariable String symbol, @Header("simpSessionId") String sessionId) {
-        webSocketSessionRegistry.put(sessionId, symbol);
+    public StockPrice initialReply(
+            @DestinationVariable String symbol,
+            @Header("simpSessionId") String sessionId,
+            @Header("simpSubscriptionId") String subscriptionId) {
+        webSocketSessionRegistry.subscribe(sessionId, subscriptionId, symbol);
         return finnhubService.getPrice(symbol);
     }
 }
@@ -0,0 +1,40 @@
+package rcs.stock.websockets;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Optional;
+
+/**
+ * Forgets the subscriptions of a session when it unsubscribes from a stock, e.g. when the user unfollows it
+ * or navigates away, or when it disconnects, so that only the stocks still watched are followed
+ */
+@Component
+public class WebSocketSessionEventListener {
+
+    private final WebSocketSessionRegistry webSocketSessionRegistry;
+
+    public WebSocketSessionEventListener(WebSocketSessionRegistry webSocketSessionRegistry) {
+        this.webSocketSessionRegistry = webSocketSessionRegistry;
+    }
+
+    @EventListener
+    public void handleWebSocketUnsubscribe(SessionUnsubscribeEvent event) {
+        MessageHeaders headers = event.getMessage().getHeaders();
+        Optional.ofNullable(headers.get("simpSessionId"))
+                .map(Object::toString)
+                .ifPresent(sessionId -> Optional.ofNullable(headers.get("simpSubscriptionId"))
+                        .map(Object::toString)
+                        .ifPresent(subscriptionId -> webSocketSessionRegistry.unsubscribe(sessionId, subscriptionId)));
+    }
+
+    @EventListener
+    public void handleWebSocketDisconnect(SessionDisconnectEvent event) {
+        Optional.ofNullable(event.getMessage().getHeaders().get("simpSessionId"))
+                .map(Object::toString)
+                .ifPresent(webSocketSessionRegistry::disconnect);
+    }
+}
@@ -1,22 +1,75 @@
 package rcs.stock.websockets;
 
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * The stock of each subscription of each session, and the number of subscriptions to each stock.
+ * Written by the threads handling STOMP messages, and read by those of the price feed.
+ * <p>
+ * Subscriptions are identified by their STOMP subscription id, which is all an UNSUBSCRIBE frame carries.
+ * Both indexes are updated under the lock of the session's entry, so a stock has subscribers
+ * as long as, and only as long as, some subscription to it is open: it is no longer followed
+ * as soon as its last subscription is unsubscribed, or the session of it is disconnected.
+ */
 public class WebSocketSessionRegistry {
 
-    private final Map<String, String> sessionsWithStock = new HashMap<>();
+    // stock by subscription id; the maps are only accessed while computing the session's entry, which locks it
+    private final ConcurrentMap<String, Map<String, String>> subscriptionsBySession = new ConcurrentHashMap<>();
 
-    public void put(String sessionId, String stock) {
-        sessionsWithStock.put(sessionId, stock);
+    // a stock is removed along with its last subscription
+    private final ConcurrentMap<String, Integer> subscribersByStock = new ConcurrentHashMap<>();
+
+    private final Set<String> stocksWithSubscribers = Collections.unmodifiableSet(subscribersByStock.keySet());
+
+    public void subscribe(String sessionId, String subscriptionId, String stock) {
+        subscriptionsBySession.compute(sessionId, (id, subscriptions) -> {
+            Map<String, String> updated = subscriptions == null ? new HashMap<>() : subscriptions;
+            String previousStock = updated.put(subscriptionId, stock);
+            if (!stock.equals(previousStock)) {
+                subscribersByStock.merge(stock, 1, Integer::sum);
+                if (previousStock != null) {
+                    removeSubscriber(previousStock);
+                }
+            }
+            return updated;
+        });
+    }
+
+    public void unsubscribe(String sessionId, String subscriptionId) {
+        subscriptionsBySession.computeIfPresent(sessionId, (id, subscriptions) -> {
+            String stock = subscriptions.remove(subscriptionId);
+            if (stock != null) {
+                removeSubscriber(stock);
+            }
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+    }
+
+    public void disconnect(String sessionId) {
+        subscriptionsBySession.computeIfPresent(sessionId, (id, subscriptions) -> {
+            subscriptions.values().forEach(this::removeSubscriber);
+            return null;
+        });
+    }
+
+    public int getSubscriberCount(String stock) {
+        return subscribersByStock.getOrDefault(stock, 0);
     }
 
-    public void remove(String sessionId) {
-        sessionsWithStock.remove(sessionId);
+    /**
+     * A read-only view rather than a copy, so it costs nothing to get. It can be iterated while sessions
+     * subscribe and disconnect, and then may or may not reflect their changes.
+     */
+    public Set<String> getStocksWithSubscribers() {
+        return stocksWithSubscribers;
     }
 
-    public Collection<String> getStocksWithSubscribers() {
-        return sessionsWithStock.values();
+    private void removeSubscriber(String stock) {
+        subscribersByStock.computeIfPresent(stock, (key, count) -> count == 1 ? null : count - 1);
     }
 }
@@ -113,7 +113,7 @@ public class StocksRestControllerIT {
         // Arrange
 
         // Act
-        List<FinnhubService.StockResponse> results = target.searchStocks("apple", 10);
+        List<FinnhubService.StockResponse> results = target.searchStocks("apple", 10).join();
 
         // Assert
         Set<String> searchTerms = results.stream()
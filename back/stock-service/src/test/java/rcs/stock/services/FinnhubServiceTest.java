@@ -7,13 +7,14 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.web.client.RestTemplate;
 import rcs.stock.models.StockPrice;
+import rcs.stock.utils.ExpiringCache;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 public class FinnhubServiceTest {
@@ -48,7 +49,8 @@ public class FinnhubServiceTest {
                 FinnhubService.StockResponse[].class))
                 .thenReturn(responseEntity);
 
-        target = new FinnhubService("fh.com", "token123", Set.of("US"), restTemplate);
+        target = new FinnhubService(
+                "fh.com", "token123", Set.of("US"), 1000, new ExpiringCache<>(Duration.ofMinutes(1), 10), restTemplate);
     }
 
     @Test
@@ -85,13 +87,86 @@ public class FinnhubServiceTest {
         assertThat(result).isEqualTo(new StockPrice("ABC", "USD", 1d, 3d));
     }
 
+    @Test
+    public void testGetPriceIsCached() {
+        // Arrange
+        ResponseEntity<FinnhubService.QuoteResponse> responseEntity =
+                mock(ResponseEntity.class);
+
+        when(responseEntity.getBody())
+                .thenReturn(new FinnhubService.QuoteResponse(1d, 2d, 3d, 4d, 5d, 6d, 7d, 8L));
+
+        when(restTemplate.getForEntity(
+                "fh.com/quote?symbol=abc&token=token123",
+                FinnhubService.QuoteResponse.class))
+                .thenReturn(responseEntity);
+
+        // Act
+        StockPrice resultA = target.getPrice("abc");
+        StockPrice resultB = target.getPrice("ABC");
+
+        // Assert
+        assertThat(resultA).isEqualTo(new StockPrice("ABC", "USD", 1d, 3d));
+        assertThat(resultB).isEqualTo(resultA);
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(FinnhubService.QuoteResponse.class));
+        assertThat(target.getQuoteCacheStats()).isEqualTo(new ExpiringCache.Stats(1, 1, 0, 1));
+    }
+
+    @Test
+    public void testGetPreviousClose() {
+        // Arrange
+        ResponseEntity<FinnhubService.QuoteResponse> responseEntity =
+                mock(ResponseEntity.class);
+
+        when(responseEntity.getBody())
+                .thenReturn(new FinnhubService.QuoteResponse(1d, 2d, 3d, 4d, 5d, 6d, 8d, 8L));
+
+        when(restTemplate.getForEntity(
+                "fh.com/quote?symbol=abc&token=token123",
+                FinnhubService.QuoteResponse.class))
+                .thenReturn(responseEntity);
+
+        // Act
+        double result = target.getPreviousClose("abc");
+
+        // Assert
+        assertThat(result).isEqualTo(8d);
+    }
+
+    @Test
+    public void testGetPriceOfTrade() {
+        // Arrange
+
+        // Act
+        StockPrice result = target.getPriceOfTrade("abc", 10d, 8d);
+
+        // Assert
+        assertThat(result).isEqualTo(new StockPrice("ABC", "USD", 10d, 25d));
+        verify(restTemplate, never()).getForEntity(
+                "fh.com/quote?symbol=abc&token=token123",
+                FinnhubService.QuoteResponse.class);
+    }
+
     @Test
     public void testSearchStocks() {
         // Arrange
         String search = "descriptions"; // not the s which is not present in the object
 
         // Act
-        List<FinnhubService.StockResponse> result = target.searchStocks(search, 10);
+        List<FinnhubService.StockResponse> result = target.searchStocks(search, 10).join();
+
+        // Assert
+        assertThat(result.stream().map(FinnhubService.StockResponse::symbol))
+                .containsExactly("ABC");
+    }
+
+    @Test
+    public void testSearchStocksByManyWords() {
+        // Arrange
+        String search = "stock descripton xyz"; // one typo, and a word not present in the object
+
+        // Act
+        List<FinnhubService.StockResponse> result = target.searchStocks(search, 10).join();
 
         // Assert
         assertThat(result.stream().map(FinnhubService.StockResponse::symbol))
@@ -0,0 +1,70 @@
+package rcs.stock.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import rcs.stock.models.StockPrice;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class PollingPriceFeedTest {
+
+    private FinnhubService finnhubService;
+
+    private PollingPriceFeed target;
+
+    @Before
+    public void setup() {
+        finnhubService = mock(FinnhubService.class);
+        target = new PollingPriceFeed(finnhubService, 30000, 4);
+    }
+
+    @After
+    public void cleanup() {
+        target.stop();
+    }
+
+    @Test
+    public void testPollFetchesEachStockOnce() {
+        // Arrange
+        StockPrice ibmStockPrice = new StockPrice("IBM", "USD", 1d, 0.5d);
+        StockPrice aaplStockPrice = new StockPrice("AAPL", "USD", 2d, 0.75d);
+
+        when(finnhubService.getPrice("IBM")).thenReturn(ibmStockPrice);
+        when(finnhubService.getPrice("AAPL")).thenReturn(aaplStockPrice);
+
+        List<StockPrice> result = new CopyOnWriteArrayList<>();
+
+        // Act
+        target.poll(List.of("IBM", "AAPL", "IBM", "IBM"), result::add);
+
+        // Assert
+        verify(finnhubService, times(1)).getPrice("IBM");
+        verify(finnhubService, times(1)).getPrice("AAPL");
+        assertThat(result).containsExactlyInAnyOrder(ibmStockPrice, aaplStockPrice);
+    }
+
+    @Test
+    public void testPollSkipsStocksWhosePriceCannotBeFetched() {
+        // Arrange
+        StockPrice ibmStockPrice = new StockPrice("IBM", "USD", 1d, 0.5d);
+
+        when(finnhubService.getPrice("IBM")).thenReturn(ibmStockPrice);
+        when(finnhubService.getPrice("AAPL")).thenThrow(new IllegalStateException());
+
+        List<StockPrice> result = new CopyOnWriteArrayList<>();
+
+        // Act
+        target.poll(List.of("AAPL", "IBM"), result::add);
+
+        // Assert
+        assertThat(result).containsExactly(ibmStockPrice);
+    }
+}
@@ -0,0 +1,100 @@
+package rcs.stock.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import rcs.stock.models.StockPrice;
+import rcs.stock.testutils.RecordedTradesServer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class StreamingPriceFeedTest {
+
+    private FinnhubService finnhubService;
+
+    @Before
+    public void setup() {
+        finnhubService = mock(FinnhubService.class);
+
+        when(finnhubService.getPreviousClose("AAPL")).thenReturn(190d);
+        when(finnhubService.getPreviousClose("IBM")).thenReturn(140d);
+
+        // the prices of the recorded trades
+        for (StockPrice price : List.of(
+                new StockPrice("AAPL", "USD", 189.5, 0d),
+                new StockPrice("AAPL", "USD", 189.52, 0d),
+                new StockPrice("AAPL", "USD", 189.55, 0d),
+                new StockPrice("IBM", "USD", 141.1, 0d),
+                new StockPrice("AAPL", "USD", 189.49, 0d))) {
+            when(finnhubService.getPriceOfTrade(
+                    price.symbol(), price.price(), price.symbol().equals("AAPL") ? 190d : 140d))
+                    .thenReturn(price);
+        }
+    }
+
+    @Test
+    public void testPushesTheLastPriceOfEachStockInEachMessage() throws Exception {
+        // Arrange
+        List<StockPrice> result = new CopyOnWriteArrayList<>();
+
+        try (RecordedTradesServer server = new RecordedTradesServer("recorded-trades.jsonl")) {
+            StreamingPriceFeed target = new StreamingPriceFeed(server.uri(), finnhubService, 50, 60_000);
+
+            // Act
+            target.start(() -> List.of("aapl", "IBM", "aapl"), result::add);
+            awaitUntil(() -> result.size() == 4);
+            target.stop();
+
+            // Assert
+            assertThat(result).containsExactly(
+                    new StockPrice("AAPL", "USD", 189.5, 0d),
+                    new StockPrice("AAPL", "USD", 189.55, 0d),
+                    new StockPrice("IBM", "USD", 141.1, 0d),
+                    new StockPrice("AAPL", "USD", 189.49, 0d));
+            assertThat(server.receivedMessages()).containsExactlyInAnyOrder(
+                    "{\"type\":\"subscribe\",\"symbol\":\"AAPL\"}",
+                    "{\"type\":\"subscribe\",\"symbol\":\"IBM\"}");
+            // once per stock, before subscribing to it, however many trades of it were streamed
+            verify(finnhubService, times(1)).getPreviousClose("AAPL");
+            verify(finnhubService, times(1)).getPreviousClose("IBM");
+            verify(finnhubService, never()).getPrice("AAPL");
+        }
+    }
+
+    @Test
+    public void testUnsubscribesFromStocksNoLongerFollowed() throws Exception {
+        // Arrange
+        AtomicReference<Collection<String>> symbols = new AtomicReference<>(List.of("AAPL", "IBM"));
+
+        try (RecordedTradesServer server = new RecordedTradesServer("recorded-trades.jsonl")) {
+            StreamingPriceFeed target = new StreamingPriceFeed(server.uri(), finnhubService, 50, 60_000);
+            target.start(symbols::get, price -> { });
+            awaitUntil(() -> server.receivedMessages().size() == 2);
+
+            // Act
+            symbols.set(List.of("IBM"));
+            awaitUntil(() -> server.receivedMessages().size() == 3);
+            target.stop();
+
+            // Assert
+            assertThat(server.receivedMessages().get(2))
+                    .isEqualTo("{\"type\":\"unsubscribe\",\"symbol\":\"AAPL\"}");
+        }
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package rcs.stock.testutils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A local stand-in for Finnhub's trade stream: accepts a single WebSocket connection, keeps the messages
+ * it receives, and once it receives the first one (a subscription), replays the recorded messages
+ * of the resource, one per line. Only implements as much of the protocol as a price feed needs.
+ */
+public class RecordedTradesServer implements AutoCloseable {
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private static final int TEXT = 0x1;
+    private static final int CLOSE = 0x8;
+
+    private record Frame(int opcode, byte[] payload) { }
+
+    private final List<String> recordedMessages;
+
+    private final List<String> receivedMessages = new CopyOnWriteArrayList<>();
+
+    private final ServerSocket serverSocket;
+
+    public RecordedTradesServer(String resource) throws IOException {
+        try (InputStream recording = Objects.requireNonNull(getClass().getClassLoader().getResourceAsStream(resource))) {
+            recordedMessages = new String(recording.readAllBytes(), StandardCharsets.UTF_8)
+                    .lines()
+                    .filter(line -> !line.isBlank())
+                    .toList();
+        }
+
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+
+        Thread thread = new Thread(this::serve);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public URI uri() {
+        return URI.create("ws://localhost:" + serverSocket.getLocalPort());
+    }
+
+    public List<String> receivedMessages() {
+        return receivedMessages;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void serve() {
+        try (Socket socket = serverSocket.accept()) {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+
+            handshake(in, out);
+
+            while (true) {
+                Frame frame = readFrame(in);
+                if (frame.opcode() == CLOSE) {
+                    writeFrame(out, CLOSE, new byte[0]);
+                    return;
+                }
+                if (frame.opcode() == TEXT) {
+                    receivedMessages.add(new String(frame.payload(), StandardCharsets.UTF_8));
+                    if (receivedMessages.size() == 1) {
+                        for (String message : recordedMessages) {
+                            writeFrame(out, TEXT, message.getBytes(StandardCharsets.UTF_8));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // the client or the test closed the connection
+        }
+    }
+
+    private static void handshake(InputStream in, OutputStream out) throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        while (!request.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            request.write(b);
+        }
+
+        String key = request.toString(StandardCharsets.US_ASCII).lines()
+                .filter(line -> line.toLowerCase().startsWith("sec-websocket-key:"))
+                .map(line -> line.substring(line.indexOf(':') + 1).trim())
+                .findFirst()
+                .orElseThrow();
+
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKeyOf(key) + "\r\n\r\n";
+        out.write(response.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static String acceptKeyOf(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // frames from clients are always masked
+    private static Frame readFrame(InputStream in) throws IOException {
+        int first = readByte(in);
+        int second = readByte(in);
+
+        long length = second & 0x7F;
+        if (length == 126) {
+            length = (readByte(in) << 8) | readByte(in);
+        } else if (length == 127) {
+            length = 0;
+            for (int i = 0; i < 8; i++) {
+                length = (length << 8) | readByte(in);
+            }
+        }
+
+        byte[] mask = (second & 0x80) != 0 ? in.readNBytes(4) : new byte[4];
+        byte[] payload = in.readNBytes((int) length);
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] ^= mask[i % 4];
+        }
+
+        return new Frame(first & 0x0F, payload);
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    // frames from servers are never masked
+    private static void writeFrame(OutputStream out, int opcode, byte[] payload) throws IOException {
+        out.write(0x80 | opcode);
+        if (payload.length < 126) {
+            out.write(payload.length);
+        } else if (payload.length < 65536) {
+            out.write(126);
+            out.write(payload.length >>> 8);
+            out.write(payload.length & 0xFF);
+        } else {
+            out.write(127);
+            for (int i = 7; i >= 0; i--) {
+                out.write((int) (((long) payload.length >>> (8 * i)) & 0xFF));
+            }
+        }
+        out.write(payload);
+        out.flush();
+    }
+}
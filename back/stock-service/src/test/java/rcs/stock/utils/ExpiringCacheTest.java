@@ -0,0 +1,165 @@
+package rcs.stock.utils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class ExpiringCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void testValuesExpireAfterTimeToLive() {
+        // Arrange
+        ExpiringCache<String, Integer> target = new ExpiringCache<>(Duration.ofSeconds(10), 10, now::get);
+
+        // Act
+        Integer resultA = target.get("a", this::load);
+        now.addAndGet(Duration.ofSeconds(9).toNanos());
+        Integer resultB = target.get("a", this::load);
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        Integer resultC = target.get("a", this::load);
+
+        // Assert
+        assertThat(resultA).isEqualTo(1);
+        assertThat(resultB).isEqualTo(1);
+        assertThat(resultC).isEqualTo(2);
+        assertThat(target.stats()).isEqualTo(new ExpiringCache.Stats(1, 2, 0, 1));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        // Arrange
+        ExpiringCache<String, Integer> target = new ExpiringCache<>(Duration.ofSeconds(10), 2, now::get);
+        target.get("a", this::load);
+        target.get("b", this::load);
+
+        // Act
+        target.get("a", this::load);
+        target.get("c", this::load);
+        Integer resultA = target.get("a", this::load);
+        Integer resultB = target.get("b", this::load);
+
+        // Assert
+        assertThat(resultA).isEqualTo(1);
+        assertThat(resultB).isEqualTo(4);
+        assertThat(target.stats().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        // Arrange
+        ExpiringCache<String, Integer> target = new ExpiringCache<>(Duration.ofSeconds(10), 10, now::get);
+
+        // Act & Assert
+        assertThatThrownBy(() -> target.get("a", key -> { throw new IllegalStateException(); }))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(target.get("a", this::load)).isEqualTo(1);
+    }
+
+    @Test
+    public void testLoadFailedWithErrorIsNotCached() throws Exception {
+        // Arrange
+        ExpiringCache<String, Integer> target = new ExpiringCache<>(Duration.ofSeconds(10), 10, now::get);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch canFinishLoading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Act
+        Future<Integer> first = executor.submit(() -> target.get("a", key -> {
+            loading.countDown();
+            await(canFinishLoading);
+            throw new AssertionError();
+        }));
+        await(loading);
+        Future<Integer> coalesced = executor.submit(() -> target.get("a", this::load));
+        while (target.stats().coalesced() < 1) {
+            Thread.sleep(1);
+        }
+        canFinishLoading.countDown();
+
+        // Assert
+        assertThatThrownBy(() -> first.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(AssertionError.class);
+        assertThatThrownBy(() -> coalesced.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(AssertionError.class);
+        assertThat(target.stats().size()).isEqualTo(0);
+        assertThat(target.get("a", this::load)).isEqualTo(1);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testNullIsNotCached() {
+        // Arrange
+        ExpiringCache<String, Integer> target = new ExpiringCache<>(Duration.ofSeconds(10), 10, now::get);
+
+        // Act
+        Integer resultA = target.get("a", key -> null);
+        Integer resultB = target.get("a", this::load);
+        Integer resultC = target.get("a", key -> null);
+
+        // Assert
+        assertThat(resultA).isNull();
+        assertThat(resultB).isEqualTo(1);
+        assertThat(resultC).isEqualTo(1);
+        assertThat(target.stats()).isEqualTo(new ExpiringCache.Stats(1, 2, 0, 1));
+    }
+
+    @Test
+    public void testConcurrentMissesAreCoalesced() throws Exception {
+        // Arrange
+        ExpiringCache<String, Integer> target = new ExpiringCache<>(Duration.ofSeconds(10), 10, now::get);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch canFinishLoading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        Future<Integer> first = executor.submit(() -> target.get("a", key -> {
+            loading.countDown();
+            await(canFinishLoading);
+            return load(key);
+        }));
+        await(loading);
+        List<Future<Integer>> others = IntStream.range(0, 7)
+                .mapToObj(i -> executor.submit(() -> target.get("a", this::load)))
+                .toList();
+        while (target.stats().coalesced() < 7) {
+            Thread.sleep(1);
+        }
+        canFinishLoading.countDown();
+
+        // Assert
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo(1);
+        for (Future<Integer> other : others) {
+            assertThat(other.get(10, TimeUnit.SECONDS)).isEqualTo(1);
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(target.stats()).isEqualTo(new ExpiringCache.Stats(0, 1, 7, 1));
+        executor.shutdown();
+    }
+
+    private Integer load(String key) {
+        return loads.incrementAndGet();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
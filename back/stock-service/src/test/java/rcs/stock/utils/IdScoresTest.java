@@ -0,0 +1,48 @@
+package rcs.stock.utils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class IdScoresTest {
+
+    @Test
+    public void testScoresEachIdOncePerToken() {
+        // Arrange
+        IdScores target = new IdScores();
+
+        // Act
+        target.addOnce(7, 0, 10);
+        target.addOnce(7, 0, 5); // a worse term of the same token
+        target.addOnce(3, 0, 8);
+        target.addOnce(3, 1, 8);
+        target.addOnce(7, 1, 1);
+
+        // Assert
+        assertThat(target.size()).isEqualTo(2);
+        assertThat(target.best(10)).containsExactly(3, 7);
+    }
+
+    @Test
+    public void testBestKeepsOnlyTheLimitWithOlderIdsWinningTies() {
+        // Arrange
+        IdScores target = new IdScores();
+
+        // ids 0 to 999, scored by their last digit: all ids ending in 9 have the best score
+        IntStream.range(0, 1000).forEach(id -> target.addOnce(id, 0, id % 10));
+
+        // Act
+        int[] best = target.best(3);
+        int[] none = target.best(0);
+
+        // Assert
+        assertThat(target.size()).isEqualTo(1000);
+        assertThat(best).containsExactly(9, 19, 29);
+        assertThat(none).isEmpty();
+    }
+}
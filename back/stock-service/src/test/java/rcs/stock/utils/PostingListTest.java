@@ -0,0 +1,128 @@
+package rcs.stock.utils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class PostingListTest {
+
+    @Test
+    public void testAddAndRemoveKeepIdsSorted() {
+        // Arrange
+        PostingList target = new PostingList(new int[] { 3, 7 });
+
+        // Act
+        target.add(5);
+        target.add(1);
+        target.add(9);
+        target.add(5);
+        target.remove(7);
+        target.remove(4);
+
+        // Assert
+        assertThat(target.ids()).containsExactly(1, 3, 5, 9);
+        assertThat(target.contains(5)).isTrue();
+        assertThat(target.contains(7)).isFalse();
+    }
+
+    @Test
+    public void testAddAllMergesWithoutDuplicates() {
+        // Arrange
+        PostingList target = new PostingList(new int[] { 2, 4, 6 });
+
+        // Act
+        target.addAll(new int[] { 1, 4, 7 });
+
+        // Assert
+        assertThat(target.ids()).containsExactly(1, 2, 4, 6, 7);
+        assertThat(target.size()).isEqualTo(5);
+    }
+
+    @Test
+    public void testRemovingLastIdLeavesItEmpty() {
+        // Arrange
+        PostingList target = new PostingList(new int[] { 2 });
+
+        // Act
+        target.remove(2);
+
+        // Assert
+        assertThat(target.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testDenseIdsAreKeptAsBitmap() {
+        // Arrange
+        PostingList target = new PostingList(IntStream.range(0, 300).filter(id -> id % 3 == 0).toArray());
+
+        // Act
+        boolean wasBitmap = target.isBitmap();
+        target.add(10_000);
+
+        // Assert
+        assertThat(wasBitmap).isTrue();
+        assertThat(target.isBitmap()).isFalse();
+        assertThat(target.size()).isEqualTo(101);
+        assertThat(target.contains(297)).isTrue();
+        assertThat(target.contains(10_000)).isTrue();
+    }
+
+    @Test
+    public void testBitmapGoesBackToArrayWhenSparse() {
+        // Arrange
+        PostingList target = new PostingList(IntStream.range(0, 640).toArray());
+
+        // Act
+        boolean wasBitmap = target.isBitmap();
+        IntStream.range(9, 640).forEach(target::remove);
+
+        // Assert
+        assertThat(wasBitmap).isTrue();
+        assertThat(target.isBitmap()).isFalse();
+        assertThat(target.ids()).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8);
+    }
+
+    @Test
+    public void testForEachUnseenMergesPostingListsInOrder() {
+        // Arrange
+        PostingList bitmap = new PostingList(IntStream.range(0, 128).filter(id -> id % 2 == 0).toArray());
+        PostingList array = new PostingList(new int[] { 1, 2, 3, 4, 150 });
+        long[] seen = new long[3];
+        List<Integer> merged = new ArrayList<>();
+
+        // Act
+        boolean completedArray = array.forEachUnseen(seen, merged::add);
+        boolean completedBitmap = bitmap.forEachUnseen(seen, id -> merged.add(id) && merged.size() < 8);
+
+        // Assert
+        assertThat(bitmap.isBitmap()).isTrue();
+        assertThat(completedArray).isTrue();
+        assertThat(completedBitmap).isFalse();
+        assertThat(merged).containsExactly(1, 2, 3, 4, 150, 0, 6, 8);
+    }
+
+    @Test
+    public void testForEachPassesAllIdsInOrder() {
+        // Arrange
+        PostingList bitmap = new PostingList(IntStream.range(0, 200).filter(id -> id % 2 == 1).toArray());
+        PostingList array = new PostingList(new int[] { 4, 70, 1000 });
+        List<Integer> fromBitmap = new ArrayList<>();
+        List<Integer> fromArray = new ArrayList<>();
+
+        // Act
+        bitmap.forEach(fromBitmap::add);
+        array.forEach(fromArray::add);
+
+        // Assert
+        assertThat(bitmap.isBitmap()).isTrue();
+        assertThat(fromBitmap).hasSize(100).startsWith(1, 3, 5).endsWith(199);
+        assertThat(fromArray).containsExactly(4, 70, 1000);
+    }
+}
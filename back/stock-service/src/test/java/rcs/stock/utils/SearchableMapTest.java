@@ -1,11 +1,19 @@
 package rcs.stock.utils;
 
+import com.rcs.trie.SearchBudget;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -41,4 +49,197 @@ public class SearchableMapTest {
         assertThat(resultB).containsExactly(dummy1);
         assertThat(resultC).isEmpty();
     }
+
+    @Test
+    public void testPutAll() {
+        // Arrange
+        SearchableMap<Integer, Dummy> target = new SearchableMap<>(Dummy::getSearch);
+
+        Dummy dummy0 = new Dummy("abc", "def", "ghi");
+        Dummy dummy1 = new Dummy("abc", "jkl", "mno");
+        Dummy dummy2 = new Dummy("abz", "pqr", "abc");
+        Dummy dummy3 = new Dummy("xyz", "stu", "mno");
+
+        target.put(1, dummy0); // should get overriden and unindexed below
+        target.put(3, dummy3);
+
+        // Act
+        target.putAll(Map.of(1, dummy1, 2, dummy2));
+
+        List<Dummy> resultA = target.searchBySubstringFuzzy("abc", 1);
+        List<Dummy> resultB = target.searchBySubstringFuzzy("xyz", 0);
+        List<Dummy> resultC = target.searchBySubstringFuzzy("ghi", 0);
+
+        // Assert
+        assertThat(target.get(1)).isEqualTo(dummy1);
+        assertThat(target.get(2)).isEqualTo(dummy2);
+        assertThat(resultA).containsExactlyInAnyOrder(dummy1, dummy2);
+        assertThat(resultB).containsExactly(dummy3);
+        assertThat(resultC).isEmpty();
+    }
+
+    @Test
+    public void testMatchBySubstringWithLimit() {
+        // Arrange
+        SearchableMap<Integer, Dummy> target = new SearchableMap<>(Dummy::getSearch);
+
+        Dummy dummy0 = new Dummy("abc", "def", "abcd");
+        Dummy dummy1 = new Dummy("abcde", "jkl", "mno");
+        Dummy dummy2 = new Dummy("abcdef", "pqr", "stu");
+
+        target.put(0, dummy0);
+        target.put(1, dummy1);
+        target.put(2, dummy2);
+
+        // Act
+        List<Dummy> resultA = target.searchBySubstringFuzzy("abc", 0, 1);
+        List<Dummy> resultB = target.searchBySubstringFuzzy("abc", 0, 2);
+        List<Dummy> resultC = target.searchBySubstringFuzzy("abc", 0, 10);
+
+        // Assert
+        assertThat(resultA).containsExactly(dummy0);
+        assertThat(resultB).containsExactly(dummy0, dummy1);
+        assertThat(resultC).containsExactly(dummy0, dummy1, dummy2);
+    }
+
+    @Test
+    public void testPutOnlyReindexesItsOwnKey() {
+        // Arrange
+        SearchableMap<Integer, Dummy> target = new SearchableMap<>(Dummy::getSearch);
+
+        Dummy dummy0 = new Dummy("apple", "", "inc");
+        Dummy dummy1 = new Dummy("microsoft", "", "inc");
+        Dummy dummy1Renamed = new Dummy("msft", "", "inc");
+        Dummy dummy2 = new Dummy("tesla", "", "motors");
+
+        target.putAll(Map.of(0, dummy0, 1, dummy1));
+        target.put(2, dummy2);
+
+        // Act
+        target.put(1, dummy1Renamed);
+        target.put(2, dummy0);
+
+        List<Dummy> resultA = target.searchBySubstringFuzzy("inc", 0);
+        List<Dummy> resultB = target.searchBySubstringFuzzy("microsoft", 0);
+        List<Dummy> resultC = target.searchBySubstringFuzzy("motors", 0);
+
+        // Assert
+        assertThat(resultA).containsExactlyInAnyOrder(dummy0, dummy1Renamed, dummy0);
+        assertThat(resultB).isEmpty();
+        assertThat(resultC).isEmpty();
+    }
+
+    @Test
+    public void testSearchByTokensRanksValuesMatchingMoreTokensFirst() {
+        // Arrange
+        SearchableMap<Integer, Dummy> target = new SearchableMap<>(Dummy::getSearch);
+
+        Dummy dummy0 = new Dummy("pineapple", "", "inc");
+        Dummy dummy1 = new Dummy("apple", "", "corp");
+        Dummy dummy2 = new Dummy("apple", "", "inc");
+        Dummy dummy3 = new Dummy("bank", "", "america");
+
+        target.putAll(Map.of(0, dummy0, 1, dummy1, 2, dummy2, 3, dummy3));
+
+        // Act
+        List<Dummy> resultA = target.searchByTokensFuzzy(List.of("apple", "inc"), token -> 0, 10);
+        List<Dummy> resultB = target.searchByTokensFuzzy(List.of("apple", "inc"), token -> 0, 2);
+        List<Dummy> resultC = target.searchByTokensFuzzy(List.of("bnak", "amrica"), token -> 2, 10);
+
+        // Assert
+        assertThat(resultA).containsExactly(dummy2, dummy0, dummy1);
+        assertThat(resultB).containsExactly(dummy2, dummy0);
+        assertThat(resultC).containsExactly(dummy3);
+    }
+
+    @Test
+    public void testSearchByTokensAsksForMoreTermsUntilEnoughValues() {
+        // Arrange
+        SearchableMap<Integer, Dummy> target = new SearchableMap<>(Dummy::getSearch);
+
+        // the first three terms matching "apple" only find two values
+        Dummy dummy0 = new Dummy("apple", "", "apples");
+        Dummy dummy1 = new Dummy("apple", "", "appled");
+        Dummy dummy2 = new Dummy("appletree", "", "orchard");
+
+        target.putAll(Map.of(0, dummy0, 1, dummy1, 2, dummy2));
+
+        // Act
+        List<Dummy> result = target.searchByTokensFuzzy(List.of("apple"), token -> 0, 3);
+
+        // Assert
+        assertThat(result).containsExactlyInAnyOrder(dummy0, dummy1, dummy2);
+    }
+
+    @Test
+    public void testAsyncSearchesFindSameValues() {
+        // Arrange
+        SearchableMap<Integer, Dummy> target = new SearchableMap<>(Dummy::getSearch);
+
+        Dummy dummy0 = new Dummy("pineapple", "", "inc");
+        Dummy dummy1 = new Dummy("apple", "", "corp");
+        Dummy dummy2 = new Dummy("apple", "", "inc");
+
+        target.putAll(Map.of(0, dummy0, 1, dummy1, 2, dummy2));
+
+        // Act
+        List<Dummy> resultA = target.searchBySubstringFuzzyAsync("aple", 1, 2).join().values();
+        List<Dummy> resultB = target.searchByTokensFuzzyAsync(List.of("apple", "inc"), token -> 0, 10).join().values();
+
+        // Assert
+        assertThat(resultA).isEqualTo(target.searchBySubstringFuzzy("aple", 1, 2));
+        assertThat(resultB).containsExactly(dummy2, dummy0, dummy1);
+    }
+
+    @Test
+    public void testSearchesFlagResultsOfSearchesOutOfBudget() {
+        // Arrange
+        SearchableMap<Integer, Dummy> unlimited = new SearchableMap<>(Dummy::getSearch);
+        SearchableMap<Integer, Dummy> outOfTime = new SearchableMap<>(Dummy::getSearch, SearchBudget.ofMillis(0));
+
+        Map<Integer, Dummy> entries = IntStream.range(0, 100).boxed()
+                .collect(Collectors.toMap(i -> i, i -> new Dummy("apple" + i, "", "inc")));
+        unlimited.putAll(entries);
+        outOfTime.putAll(entries);
+
+        // Act
+        SearchableMap.SearchResults<Dummy> resultA = unlimited.searchBySubstringFuzzyAsync("apple", 1, 10).join();
+        SearchableMap.SearchResults<Dummy> resultB = outOfTime.searchBySubstringFuzzyAsync("apple", 1, 10).join();
+        SearchableMap.SearchResults<Dummy> resultC = outOfTime
+                .searchByTokensFuzzyAsync(List.of("apple", "inc"), token -> 1, 10).join();
+
+        // Assert
+        assertThat(resultA.truncated()).isFalse();
+        assertThat(resultA.values()).hasSize(10);
+        assertThat(resultB.truncated()).isTrue();
+        assertThat(resultC.truncated()).isTrue();
+    }
+
+    @Test
+    public void testConcurrentPutsAndSearches() {
+        // Arrange
+        SearchableMap<Integer, Dummy> target = new SearchableMap<>(Dummy::getSearch);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        int numberOfEntries = 2000;
+
+        // Act
+        // all values share the search term "inc", so all puts update the same set of keys;
+        // joining all the tasks rethrows any exception thrown by a put or a search
+        CompletableFuture.allOf(IntStream.range(0, numberOfEntries)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                    target.put(i, new Dummy("inc", "", "company" + i));
+                    target.searchBySubstringFuzzy("inc", 0, 10);
+                }, executor))
+                .toArray(CompletableFuture[]::new))
+                .orTimeout(1, TimeUnit.MINUTES)
+                .join();
+        executor.shutdown();
+
+        List<Dummy> result = target.searchBySubstringFuzzy("inc", 0);
+
+        // Assert
+        assertThat(result).hasSize(numberOfEntries);
+        assertThat(target.get(numberOfEntries - 1)).isEqualTo(new Dummy("inc", "", "company" + (numberOfEntries - 1)));
+        assertThat(target.searchBySubstringFuzzy("company1999", 0)).hasSize(1);
+    }
 }
@@ -31,10 +31,10 @@ public class StockPriceWebSocketControllerTest {
         when(finnhubService.getPrice("IBM")).thenReturn(stockPrice);
 
         // Act
-        StockPrice result = target.initialReply("IBM", "sessionid");
+        StockPrice result = target.initialReply("IBM", "sessionid", "sub-0");
 
         // Assert
         assertThat(result).isEqualTo(stockPrice);
-        verify(webSocketSessionRegistry, times(1)).put("sessionid", "IBM");
+        verify(webSocketSessionRegistry, times(1)).subscribe("sessionid", "sub-0", "IBM");
     }
 }
@@ -6,17 +6,23 @@ import org.junit.runner.RunWith;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import rcs.stock.models.StockPrice;
-import rcs.stock.services.FinnhubService;
+import rcs.stock.services.PriceFeed;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 public class StockPriceWebSocketNotifierTest {
 
     private WebSocketSessionRegistry webSocketSessionRegistry;
-    private FinnhubService finnhubService;
+    private PriceFeed priceFeed;
     private SimpMessagingTemplate template;
 
     private StockPriceWebSocketNotifier target;
@@ -24,31 +30,64 @@ public class StockPriceWebSocketNotifierTest {
     @Before
     public void setup() {
         webSocketSessionRegistry = mock(WebSocketSessionRegistry.class);
-        finnhubService = mock(FinnhubService.class);
+        priceFeed = mock(PriceFeed.class);
         template = mock(SimpMessagingTemplate.class);
         target = new StockPriceWebSocketNotifier(
                 webSocketSessionRegistry,
-                finnhubService,
+                priceFeed,
                 template);
     }
 
     @Test
-    public void testNotifyStockPriceChanges() {
+    public void testStartFollowsStocksWithSubscribers() {
         // Arrange
         when(webSocketSessionRegistry.getStocksWithSubscribers())
                 .thenReturn(Set.of("IBM", "AAPL"));
 
         StockPrice ibmStockPrice = new StockPrice("IBM", "USD", 1d, 0.5d);
-        StockPrice aaplStockPrice = new StockPrice("AAPL", "USD", 2d, 0.75d);
 
-        when(finnhubService.getPrice("IBM")).thenReturn(ibmStockPrice);
-        when(finnhubService.getPrice("AAPL")).thenReturn(aaplStockPrice);
+        List<Collection<String>> followedSymbols = new ArrayList<>();
+        PriceFeed priceFeed = new PriceFeed() {
+            @Override
+            public void start(Supplier<Collection<String>> symbols, Consumer<StockPrice> listener) {
+                followedSymbols.add(symbols.get());
+                listener.accept(ibmStockPrice);
+            }
+
+            @Override
+            public void stop() { }
+        };
+
+        target = new StockPriceWebSocketNotifier(
+                webSocketSessionRegistry,
+                priceFeed,
+                template);
+
+        // Act
+        target.start();
+
+        // Assert
+        assertThat(followedSymbols).hasSize(1);
+        assertThat(followedSymbols.get(0)).containsExactlyInAnyOrder("IBM", "AAPL");
+        verify(template, times(1)).convertAndSend("/topic/stocks/IBM", ibmStockPrice);
+    }
+
+    @Test
+    public void testNotifyStockPriceChange() {
+        // Arrange
+        StockPrice ibmStockPrice = new StockPrice("IBM", "USD", 1d, 0.5d);
+        StockPrice ibmStockPriceChanged = new StockPrice("IBM", "USD", 2d, 1d);
+        StockPrice aaplStockPrice = new StockPrice("AAPL", "USD", 2d, 0.75d);
 
         // Act
-        target.notifyStockPriceChanges();
+        target.notifyStockPriceChange(ibmStockPrice);
+        target.notifyStockPriceChange(aaplStockPrice);
+        target.notifyStockPriceChange(ibmStockPrice);
+        target.notifyStockPriceChange(ibmStockPriceChanged);
 
         // Assert
         verify(template, times(1)).convertAndSend("/topic/stocks/IBM", ibmStockPrice);
+        verify(template, times(1)).convertAndSend("/topic/stocks/IBM", ibmStockPriceChanged);
         verify(template, times(1)).convertAndSend("/topic/stocks/AAPL", aaplStockPrice);
     }
 }
@@ -5,21 +5,40 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 
 import static org.mockito.Mockito.*;
 
 @RunWith(SpringJUnit4ClassRunner.class)
-public class WebSocketDisconnectListenerTest {
+public class WebSocketSessionEventListenerTest {
 
     private WebSocketSessionRegistry webSocketSessionRegistry;
-    private WebSocketDisconnectListener target;
+    private WebSocketSessionEventListener target;
 
     @Before
     public void setup() {
         webSocketSessionRegistry = mock(WebSocketSessionRegistry.class);
-        target = new WebSocketDisconnectListener(webSocketSessionRegistry);
+        target = new WebSocketSessionEventListener(webSocketSessionRegistry);
+    }
+
+    @Test
+    public void testHandleWebSocketUnsubscribe() {
+        // Arrange
+        SessionUnsubscribeEvent event = mock(SessionUnsubscribeEvent.class);
+        Message<byte[]> message = mock(Message.class);
+        MessageHeaders headers = mock(MessageHeaders.class);
+        when(headers.get("simpSessionId")).thenReturn("sessionid123");
+        when(headers.get("simpSubscriptionId")).thenReturn("sub-0");
+        when(message.getHeaders()).thenReturn(headers);
+        when(event.getMessage()).thenReturn(message);
+
+        // Act
+        target.handleWebSocketUnsubscribe(event);
+
+        // Assert
+        verify(webSocketSessionRegistry, times(1)).unsubscribe("sessionid123", "sub-0");
     }
 
     @Test
@@ -36,6 +55,6 @@ public class WebSocketDisconnectListenerTest {
         target.handleWebSocketDisconnect(event);
 
         // Assert
-        verify(webSocketSessionRegistry, times(1)).remove("sessionid123");
+        verify(webSocketSessionRegistry, times(1)).disconnect("sessionid123");
     }
 }
@@ -5,6 +5,8 @@ import org.junit.runner.RunWith;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -12,11 +14,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class WebSocketSessionRegistryTest {
 
     @Test
-    public void testPutAndRemove() {
+    public void testSubscribeAndDisconnect() {
         // Arrange
         WebSocketSessionRegistry target = new WebSocketSessionRegistry();
-        target.put("123", "abc");
-        target.put("456", "def");
+        target.subscribe("123", "sub-0", "abc");
+        target.subscribe("456", "sub-0", "def");
 
         // Act
         Collection<String> resultA = target.getStocksWithSubscribers();
@@ -25,7 +27,7 @@ public class WebSocketSessionRegistryTest {
         assertThat(resultA).containsExactlyInAnyOrder("abc", "def");
 
         // Arrange
-        target.remove("123");
+        target.disconnect("123");
 
         // Act
         Collection<String> resultB = target.getStocksWithSubscribers();
@@ -33,4 +35,92 @@ public class WebSocketSessionRegistryTest {
         // Assert
         assertThat(resultB).containsExactly("def");
     }
+
+    @Test
+    public void testKeepsEverySubscriptionOfASession() {
+        // Arrange
+        WebSocketSessionRegistry target = new WebSocketSessionRegistry();
+        target.subscribe("123", "sub-0", "abc");
+        target.subscribe("123", "sub-1", "def");
+        target.subscribe("456", "sub-0", "abc");
+
+        // Act
+        Collection<String> resultA = target.getStocksWithSubscribers();
+
+        // Assert
+        assertThat(resultA).containsExactlyInAnyOrder("abc", "def");
+        assertThat(target.getSubscriberCount("abc")).isEqualTo(2);
+        assertThat(target.getSubscriberCount("def")).isEqualTo(1);
+
+        // Arrange
+        target.disconnect("456");
+
+        // Act
+        Collection<String> resultB = target.getStocksWithSubscribers();
+
+        // Assert
+        assertThat(resultB).containsExactlyInAnyOrder("abc", "def");
+        assertThat(target.getSubscriberCount("abc")).isEqualTo(1);
+    }
+
+    @Test
+    public void testStopsFollowingAStockWhenItsLastSubscriptionIsUnsubscribed() {
+        // Arrange
+        WebSocketSessionRegistry target = new WebSocketSessionRegistry();
+        target.subscribe("123", "sub-0", "abc");
+        target.subscribe("123", "sub-1", "abc");
+        target.subscribe("123", "sub-2", "def");
+
+        // Act
+        target.unsubscribe("123", "sub-0");
+
+        // Assert
+        assertThat(target.getStocksWithSubscribers()).containsExactlyInAnyOrder("abc", "def");
+        assertThat(target.getSubscriberCount("abc")).isEqualTo(1);
+
+        // Act
+        target.unsubscribe("123", "sub-1");
+        target.unsubscribe("123", "sub-1");
+        target.unsubscribe("123", "unknown");
+
+        // Assert
+        assertThat(target.getStocksWithSubscribers()).containsExactly("def");
+        assertThat(target.getSubscriberCount("abc")).isEqualTo(0);
+        assertThat(target.getSubscriberCount("def")).isEqualTo(1);
+
+        // Act
+        target.unsubscribe("123", "sub-2");
+        target.disconnect("123");
+
+        // Assert
+        assertThat(target.getStocksWithSubscribers()).isEmpty();
+    }
+
+    @Test
+    public void testConcurrentSubscriptions() {
+        // Arrange
+        WebSocketSessionRegistry target = new WebSocketSessionRegistry();
+        target.subscribe("keeper", "sub-0", "abc");
+
+        // Act
+        CompletableFuture.allOf(IntStream.range(0, 1000)
+                        .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                            String sessionId = "session" + i;
+                            target.subscribe(sessionId, "sub-0", "abc");
+                            target.subscribe(sessionId, "sub-1", "stock" + (i % 10));
+                            target.unsubscribe(sessionId, "sub-0");
+                            if (i % 2 == 0) {
+                                target.disconnect(sessionId);
+                            }
+                        }))
+                        .toArray(CompletableFuture[]::new))
+                .join();
+
+        // Assert
+        assertThat(target.getSubscriberCount("abc")).isEqualTo(1);
+        assertThat(target.getStocksWithSubscribers())
+                .containsExactlyInAnyOrder("abc", "stock1", "stock3", "stock5", "stock7", "stock9");
+        assertThat(target.getSubscriberCount("stock1")).isEqualTo(100);
+        assertThat(target.getSubscriberCount("stock0")).isEqualTo(0);
+    }
 }
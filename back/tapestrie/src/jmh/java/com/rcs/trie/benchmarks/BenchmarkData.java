@@ -0,0 +1,94 @@
+package com.rcs.trie.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic data sets shaped like the stock-service search index:
+ * lowercase ticker symbols, and words of company descriptions built from common syllables,
+ * so that they share prefixes and suffixes the way real company names do.
+ */
+final class BenchmarkData {
+
+    private static final String[] SYLLABLES = {
+            "ap", "ple", "mi", "cro", "soft", "tech", "no", "lo", "gies", "hold", "ings", "bank",
+            "cor", "por", "at", "ed", "in", "ter", "na", "tio", "nal", "en", "er", "gy", "phar",
+            "ma", "bio", "sys", "tems", "fi", "nan", "cial", "glo", "bal", "tra", "de", "re", "al",
+            "ty", "vest", "ments", "com", "mu", "ni", "ca", "tions", "me", "di", "auto", "mo", "tive"
+    };
+
+    private static final String[] COMMON_WORDS = {
+            "inc", "corp", "ltd", "co", "plc", "group", "holdings", "incorporated", "technologies",
+            "international", "class", "a", "b", "fund", "trust", "etf", "adr", "shares", "of", "the"
+    };
+
+    private BenchmarkData() {
+    }
+
+    static List<String> symbols(int count, long seed) {
+        Random random = new Random(seed);
+        Set<String> symbols = new LinkedHashSet<>();
+        while (symbols.size() < count) {
+            int length = 1 + random.nextInt(5);
+            StringBuilder symbol = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                symbol.append((char) ('a' + random.nextInt(26)));
+            }
+            symbols.add(symbol.toString());
+        }
+        return new ArrayList<>(symbols);
+    }
+
+    static List<String> words(int count, long seed) {
+        Random random = new Random(seed);
+        Set<String> words = new LinkedHashSet<>(List.of(COMMON_WORDS));
+        while (words.size() < count) {
+            words.add(word(random));
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Multi-word strings, like whole company descriptions
+     */
+    static List<String> phrases(int count, long seed) {
+        Random random = new Random(seed);
+        Set<String> phrases = new LinkedHashSet<>();
+        while (phrases.size() < count) {
+            int numberOfWords = 2 + random.nextInt(4);
+            StringBuilder phrase = new StringBuilder(word(random));
+            for (int i = 1; i < numberOfWords; i++) {
+                phrase.append(' ');
+                phrase.append(random.nextInt(3) == 0
+                        ? COMMON_WORDS[random.nextInt(COMMON_WORDS.length)]
+                        : word(random));
+            }
+            phrases.add(phrase.toString());
+        }
+        return new ArrayList<>(phrases);
+    }
+
+    /**
+     * Symbols and description words together, as indexed by the stock-service, in a shuffled order
+     */
+    static List<String> searchTerms(int numberOfSymbols, int numberOfWords, long seed) {
+        Set<String> terms = new LinkedHashSet<>(symbols(numberOfSymbols, seed));
+        terms.addAll(words(numberOfWords, seed));
+        List<String> shuffled = new ArrayList<>(terms);
+        Collections.shuffle(shuffled, new Random(seed));
+        return shuffled;
+    }
+
+    private static String word(Random random) {
+        int numberOfSyllables = 1 + random.nextInt(4);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < numberOfSyllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,39 @@
+package com.rcs.trie.benchmarks;
+
+import com.rcs.trie.Trie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexes 100,000 multi-word strings, like whole company descriptions, into an empty Trie.
+ * Long strings make deep Tries, so this is dominated by the depth updates done on every put.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrieBulkLoadBenchmark {
+
+    @Param({"false", "true"})
+    private boolean compressed;
+
+    private List<String> phrases;
+
+    @Setup
+    public void setup() {
+        phrases = BenchmarkData.phrases(100_000, 42);
+    }
+
+    @Benchmark
+    public Trie<Integer> put() {
+        Trie<Integer> trie = new Trie<>(compressed);
+        for (int i = 0; i < phrases.size(); i++) {
+            trie.put(phrases.get(i), i);
+        }
+        return trie;
+    }
+}
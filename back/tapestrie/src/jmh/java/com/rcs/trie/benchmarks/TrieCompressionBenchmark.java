@@ -0,0 +1,77 @@
+package com.rcs.trie.benchmarks;
+
+import com.rcs.trie.FuzzyMatchingStrategy;
+import com.rcs.trie.Trie;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the uncompressed and compressed (radix) Trie on the same data set.
+ * The heap retained by each Trie is printed once per fork, before the measurements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrieCompressionBenchmark {
+
+    @Param({"false", "true"})
+    private boolean compressed;
+
+    private List<String> terms;
+    private Trie<Integer> trie;
+
+    @Setup
+    public void setup() {
+        terms = BenchmarkData.searchTerms(20_000, 20_000, 42);
+
+        long heapBefore = usedHeap();
+        trie = new Trie<>(compressed);
+        for (int i = 0; i < terms.size(); i++) {
+            trie.put(terms.get(i), i);
+        }
+        long heapAfter = usedHeap();
+
+        System.out.printf("%nRetained heap (compressed = %s): %.1f MB%n",
+                compressed, (heapAfter - heapBefore) / (1024.0 * 1024.0));
+    }
+
+    @Benchmark
+    public Trie<Integer> put() {
+        Trie<Integer> newTrie = new Trie<>(compressed);
+        for (int i = 0; i < terms.size(); i++) {
+            newTrie.put(terms.get(i), i);
+        }
+        return newTrie;
+    }
+
+    @Benchmark
+    public void getExactly(Blackhole blackhole) {
+        for (String term : terms) {
+            blackhole.consume(trie.getExactly(term));
+        }
+    }
+
+    @Benchmark
+    public Object matchBySubstring() {
+        return trie.matchBySubstring("tech");
+    }
+
+    @Benchmark
+    public Object matchBySubstringFuzzy() {
+        return trie.matchBySubstringFuzzy("holdings", 1, FuzzyMatchingStrategy.LIBERAL);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
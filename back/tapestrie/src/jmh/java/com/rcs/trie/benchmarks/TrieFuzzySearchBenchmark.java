@@ -0,0 +1,50 @@
+package com.rcs.trie.benchmarks;
+
+import com.rcs.trie.FuzzyMatchingStrategy;
+import com.rcs.trie.Trie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures fuzzy searches like the stock-service type-ahead does them, on the compressed Trie it uses:
+ * all the results, or only the best 10; and type-ahead by fuzzy prefix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrieFuzzySearchBenchmark {
+
+    @Param({"tech", "holdings"})
+    private String search;
+
+    private Trie<Integer> trie;
+
+    @Setup
+    public void setup() {
+        List<String> terms = BenchmarkData.searchTerms(20_000, 20_000, 42);
+        trie = new Trie<>(true);
+        for (int i = 0; i < terms.size(); i++) {
+            trie.put(terms.get(i), i);
+        }
+    }
+
+    @Benchmark
+    public Object matchBySubstringFuzzy() {
+        return trie.matchBySubstringFuzzy(search, 1, FuzzyMatchingStrategy.LIBERAL);
+    }
+
+    @Benchmark
+    public Object matchBySubstringFuzzyTop10() {
+        return trie.matchBySubstringFuzzy(search, 1, FuzzyMatchingStrategy.LIBERAL, 10);
+    }
+
+    @Benchmark
+    public Object matchByPrefixFuzzy() {
+        return trie.matchByPrefixFuzzy(search, 1);
+    }
+}
@@ -0,0 +1,46 @@
+package com.rcs.trie.benchmarks;
+
+import com.rcs.trie.FuzzyMatchingStrategy;
+import com.rcs.trie.Trie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how a single fuzzy search scales with the number of threads it runs on.
+ * The data set is skewed like real company names (many more strings start with some letters than others),
+ * so the search only scales if the work beneath the busiest nodes is split among threads.
+ * <p>
+ * Each set of params runs in its own JVM, so the size of the coroutines' default dispatcher
+ * can be set before it is first used. Results are only meaningful on a machine with at least as many cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrieFuzzySearchScalingBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    private Trie<Integer> trie;
+
+    @Setup
+    public void setup() {
+        System.setProperty("kotlinx.coroutines.scheduler.core.pool.size", String.valueOf(threads));
+
+        List<String> terms = BenchmarkData.searchTerms(20_000, 20_000, 42);
+        trie = new Trie<>(true);
+        for (int i = 0; i < terms.size(); i++) {
+            trie.put(terms.get(i), i);
+        }
+    }
+
+    @Benchmark
+    public Object matchBySubstringFuzzy() {
+        return trie.matchBySubstringFuzzy("tech", 1, FuzzyMatchingStrategy.LIBERAL);
+    }
+}
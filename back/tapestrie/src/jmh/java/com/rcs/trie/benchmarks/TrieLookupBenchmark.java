@@ -0,0 +1,67 @@
+package com.rcs.trie.benchmarks;
+
+import com.rcs.trie.Trie;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the operations that walk the Trie one child lookup at a time:
+ * building it, exact lookups (hits and misses) and prefix lookups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrieLookupBenchmark {
+
+    private List<String> terms;
+    private List<String> missingTerms;
+    private List<String> prefixes;
+    private Trie<Integer> trie;
+
+    @Setup
+    public void setup() {
+        terms = BenchmarkData.searchTerms(20_000, 20_000, 42);
+        missingTerms = terms.stream().map(term -> term + "#").toList();
+        prefixes = terms.stream().limit(100).map(term -> term.substring(0, Math.min(3, term.length()))).toList();
+        trie = new Trie<>();
+        for (int i = 0; i < terms.size(); i++) {
+            trie.put(terms.get(i), i);
+        }
+    }
+
+    @Benchmark
+    public Trie<Integer> put() {
+        Trie<Integer> newTrie = new Trie<>();
+        for (int i = 0; i < terms.size(); i++) {
+            newTrie.put(terms.get(i), i);
+        }
+        return newTrie;
+    }
+
+    @Benchmark
+    public void getExactly(Blackhole blackhole) {
+        for (String term : terms) {
+            blackhole.consume(trie.getExactly(term));
+        }
+    }
+
+    @Benchmark
+    public void getExactlyMissing(Blackhole blackhole) {
+        for (String term : missingTerms) {
+            blackhole.consume(trie.getExactly(term));
+        }
+    }
+
+    @Benchmark
+    public void matchByPrefix(Blackhole blackhole) {
+        for (String prefix : prefixes) {
+            blackhole.consume(trie.matchByPrefix(prefix));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.rcs.trie
+
+import com.rcs.trie.FuzzyMatchingStrategy.*
+
+/**
+ * Tells a fuzzy search which positions of the Trie it need not explore: those below which no string can contain
+ * a substring within `errorTolerance` edits (insertions, deletions or substitutions) of the keyword.
+ * Every result of a LIBERAL or FUZZY_PREFIX search is such a substring, so skipping these positions
+ * gives exactly the same results.
+ *
+ * It runs Myers' bit-parallel edit distance algorithm down the Trie, along with the search states: each character
+ * costs a few operations on a single machine word, whatever the error tolerance, whereas fuzzy search states
+ * branch out on every error. The state of the algorithm at a position is a [Column], which the search states
+ * at that position share.
+ */
+internal class BitParallelFilter private constructor(
+    private val keyword: String,
+    private val errorTolerance: Int,
+    private val caseInsensitive: Boolean
+) {
+
+    // a bit for each character of the keyword that an ASCII character matches
+    private val asciiMatchMasks = LongArray(128).also {
+        keyword.forEachIndexed { i, char ->
+            val cased = char.casedForMatching()
+            if (cased.code < 128) {
+                it[cased.code] = it[cased.code] or (1L shl i)
+            }
+        }
+    }
+
+    private val lastBit = 1L shl (keyword.length - 1)
+
+    /**
+     * The state of the algorithm after reading the characters from the root to a position:
+     * the vertical differences between the edit distances of the prefixes of the keyword,
+     * and the edit distance of the whole keyword to the best substring ending at the position
+     */
+    class Column(
+        val positiveVertical: Long,
+        val negativeVertical: Long,
+        val distance: Int
+    )
+
+    /**
+     * The column at the root: the distance from each prefix of the keyword to the empty string
+     * is its length, as all its characters are missing
+     */
+    fun initialColumn(): Column {
+        return Column(-1L ushr (64 - keyword.length), 0L, keyword.length)
+    }
+
+    /**
+     * The column after reading the character at the next position, or null if no string through that position
+     * can contain a match, given that at most `charactersBelow` characters follow it.
+     * Once a match is found, every string beneath contains it, so the column no longer needs updating.
+     */
+    fun next(column: Column, char: Char, charactersBelow: Int): Column? {
+        if (column === MATCHED) {
+            return MATCHED
+        }
+
+        val matchMask = matchMask(char)
+        val positiveVertical = column.positiveVertical
+        val negativeVertical = column.negativeVertical
+        var distance = column.distance
+
+        val verticalChanges = matchMask or negativeVertical
+        val horizontalChanges = (((matchMask and positiveVertical) + positiveVertical) xor positiveVertical) or matchMask
+        var positiveHorizontal = negativeVertical or (horizontalChanges or positiveVertical).inv()
+        var negativeHorizontal = positiveVertical and horizontalChanges
+
+        if (positiveHorizontal and lastBit != 0L) {
+            distance++
+        } else if (negativeHorizontal and lastBit != 0L) {
+            distance--
+        }
+
+        if (distance <= errorTolerance) {
+            return MATCHED
+        }
+
+        // not carrying a 1 into the first row is what lets a match start anywhere in the string
+        positiveHorizontal = positiveHorizontal shl 1
+        negativeHorizontal = negativeHorizontal shl 1
+
+        val next = Column(
+            negativeHorizontal or (verticalChanges or positiveHorizontal).inv(),
+            positiveHorizontal and verticalChanges,
+            distance)
+
+        return if (canStillMatch(next, charactersBelow)) next else null
+    }
+
+    /**
+     * A match ending below either starts below, and then misses at least the characters of the keyword
+     * beyond `charactersBelow`, or goes through the column at some prefix of the keyword, and then costs
+     * at least the distance of that prefix, plus the characters of the rest of the keyword beyond `charactersBelow`
+     */
+    private fun canStillMatch(column: Column, charactersBelow: Int): Boolean {
+        val length = keyword.length
+        if (length - charactersBelow <= errorTolerance) {
+            return true
+        }
+
+        // the distance of the empty prefix is always 0, and those of the others follow from the vertical differences
+        var prefixDistance = 0
+        for (prefixLength in 1..length) {
+            val bit = 1L shl (prefixLength - 1)
+            if (column.positiveVertical and bit != 0L) {
+                prefixDistance++
+            } else if (column.negativeVertical and bit != 0L) {
+                prefixDistance--
+            }
+            if (prefixDistance + maxOf(0, length - prefixLength - charactersBelow) <= errorTolerance) {
+                return true
+            }
+        }
+        return false
+    }
+
+    private fun matchMask(char: Char): Long {
+        val cased = char.casedForMatching()
+        if (cased.code < 128) {
+            return asciiMatchMasks[cased.code]
+        }
+
+        var mask = 0L
+        keyword.forEachIndexed { i, keywordChar ->
+            if (keywordChar.casedForMatching() == cased) {
+                mask = mask or (1L shl i)
+            }
+        }
+        return mask
+    }
+
+    private fun Char.casedForMatching(): Char {
+        return if (caseInsensitive) {
+            this.lowercaseChar()
+        } else {
+            this
+        }
+    }
+
+    companion object {
+
+        // the column of every position at or below a match
+        private val MATCHED = Column(0L, 0L, 0)
+
+        /**
+         * Returns null when the filter does not apply: to other strategies, whose results are not necessarily
+         * within the error tolerance of the keyword (e.g. ACRONYM, or WILDCARD), to keywords too long
+         * for a machine word, or when the error tolerance allows matching any string.
+         */
+        fun forSearch(
+            keyword: String,
+            errorTolerance: Int,
+            matchingStrategy: FuzzyMatchingStrategy,
+            caseInsensitive: Boolean
+        ): BitParallelFilter? {
+            val applies = (matchingStrategy == LIBERAL || matchingStrategy == FUZZY_PREFIX)
+                    && keyword.length <= Long.SIZE_BITS
+                    && errorTolerance < keyword.length
+
+            return if (applies) BitParallelFilter(keyword, errorTolerance, caseInsensitive) else null
+        }
+    }
+}
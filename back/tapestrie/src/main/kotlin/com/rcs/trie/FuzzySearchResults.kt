@@ -0,0 +1,68 @@
+package com.rcs.trie
+
+import java.util.TreeSet
+
+/**
+ * Collects the results of a single search: only the best result for each string is kept,
+ * and only the best `limit` results overall, so memory is bounded by the limit rather than by the Trie.
+ * This is not thread-safe: each coroutine of a search collects its own results, which are merged at the end.
+ */
+class FuzzySearchResults<T>(private val limit: Int = Int.MAX_VALUE) {
+
+    private val bestByString = mutableMapOf<String, TrieSearchResult<T>>()
+
+    // ties are broken by string, so that the same results are kept regardless of the order they are found
+    private val comparator = TrieSearchResultComparator.byBestMatchFirst
+        .then(compareBy<TrieSearchResult<*>> { it.string })
+
+    private val best = TreeSet<TrieSearchResult<T>>(comparator)
+
+    init {
+        if (limit <= 0) {
+            throw IllegalArgumentException("The limit must be > 0")
+        }
+    }
+
+    /**
+     * Returns whether the match was kept
+     */
+    fun add(newMatch: TrieSearchResult<T>): Boolean {
+        val existing = bestByString[newMatch.string]
+
+        if (existing != null) {
+            if (comparator.compare(newMatch, existing) >= 0) {
+                return false
+            }
+            best.remove(existing)
+        } else if (best.size == limit && comparator.compare(newMatch, best.last()) >= 0) {
+            return false
+        }
+
+        bestByString[newMatch.string] = newMatch
+        best.add(newMatch)
+
+        if (best.size > limit) {
+            bestByString.remove(best.pollLast()!!.string)
+        }
+
+        return true
+    }
+
+    fun addAll(other: FuzzySearchResults<T>) {
+        other.best.forEach { add(it) }
+    }
+
+    /**
+     * The worst result kept, once there are as many results as the limit: no result worse than it can be added
+     */
+    fun worstWhenFull(): TrieSearchResult<T>? {
+        return if (best.size == limit) best.last() else null
+    }
+
+    /**
+     * Returns the results collected, best match first
+     */
+    fun toList(): List<TrieSearchResult<T>> {
+        return best.toList()
+    }
+}
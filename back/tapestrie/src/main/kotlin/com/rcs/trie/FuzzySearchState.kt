@@ -1,6 +1,7 @@
 package com.rcs.trie
 
 import com.rcs.trie.FuzzyMatchingStrategy.*
+import kotlin.math.min
 
 /**
  * Invariable properties of the search request - these never change.
@@ -10,115 +11,182 @@ private data class SearchRequest(
     val keyword: String,
     val numberOfPredeterminedErrors: Int,
     val errorTolerance: Int,
-    val caseInsensitive: Boolean
+    val caseInsensitive: Boolean,
+    // if not null, tells which positions cannot lead to results
+    val filter: BitParallelFilter?
 )
 
 /**
- * Variable properties that change depending on what TrieNode we're looking at.
+ * Swap characters pending for SWAP strategies, as an immutable linked list (oldest first),
+ * so that states can share them instead of copying them.
  */
-private data class SearchVariables<T>(
-    val node: TrieNode<T>,
-    val sequence: String,
-    val isGatherState: Boolean,
-)
+private class SwapChars(
+    val fromSource: Char,
+    val fromTarget: Char,
+    val next: SwapChars?
+) {
+    fun hasSameCharsAs(other: SwapChars): Boolean {
+        return fromSource == other.fromSource && fromTarget == other.fromTarget
+    }
+}
 
-/**
- * The search coordinates, which may or may not lead to a successful match.
- */
-private data class SearchCoordinates(
-    val keywordIndex: Int,
-    val numberOfMatches: Int,
-    val numberOfErrors: Int,
-    val startMatchIndex: Int?,
-    val endMatchIndex: Int?,
-    val swapChars: List<SwapChars>?
-)
+private fun SwapChars?.plus(fromSource: Char, fromTarget: Char): SwapChars {
+    return if (this == null) {
+        SwapChars(fromSource, fromTarget, null)
+    } else {
+        SwapChars(this.fromSource, this.fromTarget, next.plus(fromSource, fromTarget))
+    }
+}
+
+private fun SwapChars?.without(swapChars: SwapChars): SwapChars? {
+    if (this == null) {
+        return null
+    }
+    val rest = next.without(swapChars)
+    return when {
+        hasSameCharsAs(swapChars) -> rest
+        rest === next -> this
+        else -> SwapChars(fromSource, fromTarget, rest)
+    }
+}
 
 /**
- * Holds swap characters for matching SWAP strategies
+ * Same as matching "[\\s\\p{P}]", without a regex: ASCII whitespace, or any Unicode punctuation
  */
-private data class SwapChars(
-    val fromSource: String,
-    val fromTarget: String
-)
+internal fun Char.isWordSeparator(): Boolean {
+    return when (this) {
+        ' ', '\t', '\n', '\u000B', '\u000C', '\r' -> true
+        else -> when (Character.getType(this).toByte()) {
+            Character.CONNECTOR_PUNCTUATION,
+            Character.DASH_PUNCTUATION,
+            Character.START_PUNCTUATION,
+            Character.END_PUNCTUATION,
+            Character.INITIAL_QUOTE_PUNCTUATION,
+            Character.FINAL_QUOTE_PUNCTUATION,
+            Character.OTHER_PUNCTUATION -> true
+            else -> false
+        }
+    }
+}
 
 /**
- * A convenience class for passing around new search error states.
+ * A state of the search. There are many of these per search, so a state only holds primitives and references
+ * it shares with the states it stems from: the characters from the root to its position are not copied,
+ * but read back from the Trie (by following the previous nodes) when a search result is built.
  */
-private data class ErrorStrategy<T>(
-    val node: TrieNode<T>,
-    val searchIndex: Int,
-    val sequence: String,
-    val swapChar: SwapChars?,
-    val startMatchIndex: Int?
-)
-
-private val wordSeparatorRegex = "[\\s\\p{P}]".toRegex()
-
 class FuzzySearchState<T> private constructor(
     private val searchRequest: SearchRequest,
-    private val searchVariables: SearchVariables<T>,
-    private val searchCoordinates: SearchCoordinates
+    // the position in the Trie: a node, and the index of a character in its label (-1 at the root, whose label is empty)
+    private val node: TrieNode<T>,
+    private val labelIndex: Int,
+    // the number of characters from the root to the position
+    private val level: Int,
+    // the number of characters from the last word separator (or the root) to the position, 0 at a word separator
+    private val charactersSinceWordSeparator: Int,
+    private val isGatherState: Boolean,
+    private val keywordIndex: Int,
+    private val numberOfMatches: Int,
+    private val numberOfErrors: Int,
+    // NO_INDEX until something matches
+    private val startMatchIndex: Int,
+    private val endMatchIndex: Int,
+    private val swapChars: SwapChars?,
+    // the state of the filter at the position, shared by all the states there; null without a filter
+    private val filterColumn: BitParallelFilter.Column?
 ) {
 
     fun nextStates(): Collection<FuzzySearchState<T>> {
-        synchronized(searchVariables.node.next) {
-            return searchVariables.node.next
-                .map { nextStates(it) ?: listOf() }
-                .flatten()
+        val nextStates = mutableListOf<FuzzySearchState<T>>()
+        addNextStatesTo(nextStates)
+        return nextStates
+    }
+
+    /**
+     * Same as [nextStates], but adds the states straight to the destination, without intermediate collections
+     */
+    fun addNextStatesTo(destination: MutableCollection<FuzzySearchState<T>>) {
+        if (labelIndex < node.length() - 1) {
+            addNextStates(node, labelIndex + 1, destination)
+        } else {
+            for (nextNode in node.next) {
+                addNextStates(nextNode, 0, destination)
+            }
         }
     }
 
+    /**
+     * The length of the sequence of characters from the root to the current position
+     */
+    fun sequenceLength(): Int {
+        return level
+    }
+
+    /**
+     * The greatest number of matches that any result from the states stemming from this one could have:
+     * none can be added once gathering (except for acronyms, which resume matching at the next word),
+     * and otherwise no more than there are characters left below, or in the keyword.
+     */
+    fun maximumNumberOfMatchesInNextStates(): Int {
+        if (isGatherState && searchRequest.matchingStrategy != ACRONYM) {
+            return numberOfMatches
+        }
+
+        val charactersBelow = node.depthAt(labelIndex) - 1
+        return min(searchRequest.keyword.length, numberOfMatches + charactersBelow)
+    }
+
     fun hasSearchResult(): Boolean {
-        return searchVariables.node.completes() && matches()
+        return node.completesAt(labelIndex) && matches()
     }
 
-    fun buildSearchResult(): TrieSearchResult<T> {
-        if (!hasSearchResult()) {
+    /**
+     * Returns null if the string was removed since [hasSearchResult] was checked
+     */
+    fun buildSearchResult(): TrieSearchResult<T>? {
+        if (labelIndex != node.length() - 1 || !matches()) {
             throw IllegalStateException("State does not have a search result")
         }
 
-        val actualErrors = getNumberOfErrorsIncludingMissingCharacters() +
-                searchRequest.numberOfPredeterminedErrors
+        // a concurrent remove can clear the value at any time, so it is only read once
+        val value = node.value ?: return null
 
-        val assertedStartMatchIndex = searchCoordinates.startMatchIndex!!
+        val sequence = buildSequence()
 
-        val assertedEndMatchIndex = searchCoordinates.endMatchIndex!!
+        val actualErrors = getNumberOfErrorsIncludingMissingCharacters() +
+                searchRequest.numberOfPredeterminedErrors
 
         val matchedWholeSequence = actualErrors == 0
-                && matchedWholeSequence(assertedStartMatchIndex, assertedEndMatchIndex)
+                && matchedWholeSequence(sequence, startMatchIndex, endMatchIndex)
 
         val matchedWholeWord = actualErrors == 0
-                && matchedWholeWord(assertedStartMatchIndex, assertedEndMatchIndex)
+                && matchedWholeWord(sequence, startMatchIndex, endMatchIndex)
 
-        val indexOfWordSeparatorBefore = searchVariables.sequence
-            .indexOfLastWordSeparator(assertedStartMatchIndex) ?: -1
+        val indexOfWordSeparatorBefore = sequence
+            .indexOfLastWordSeparator(startMatchIndex) ?: -1
 
-        val indexOfWordSeparatorAfter = searchVariables.sequence
-            .indexOfFirstWordSeparator(assertedEndMatchIndex + 1) ?: searchVariables.sequence.length
+        val indexOfWordSeparatorAfter = sequence
+            .indexOfFirstWordSeparator(endMatchIndex + 1) ?: sequence.length
 
-        val prefixDistance = assertedStartMatchIndex - indexOfWordSeparatorBefore - 1
+        val prefixDistance = startMatchIndex - indexOfWordSeparatorBefore - 1
 
         val matchedSubstringEndIndex = when(searchRequest.matchingStrategy) {
             ACRONYM ->
-                searchVariables.sequence.indexOfFirstWordSeparator(assertedEndMatchIndex + 1)
-                    ?: searchVariables.sequence.length
+                sequence.indexOfFirstWordSeparator(endMatchIndex + 1)
+                    ?: sequence.length
             else ->
-                assertedEndMatchIndex + 1
+                endMatchIndex + 1
         }
 
-        val matchedSubstring = searchVariables.sequence.substring(
-            assertedStartMatchIndex, matchedSubstringEndIndex)
+        val matchedSubstring = sequence.substring(startMatchIndex, matchedSubstringEndIndex)
 
-        val matchedWord = searchVariables.sequence.substring(
-            indexOfWordSeparatorBefore + 1, indexOfWordSeparatorAfter)
+        val matchedWord = sequence.substring(indexOfWordSeparatorBefore + 1, indexOfWordSeparatorAfter)
 
         return TrieSearchResult(
-            searchVariables.sequence,
-            searchVariables.node.value!!,
+            sequence,
+            value,
             matchedSubstring,
             matchedWord,
-            searchCoordinates.numberOfMatches,
+            numberOfMatches,
             actualErrors,
             prefixDistance,
             matchedWholeSequence,
@@ -126,171 +194,235 @@ class FuzzySearchState<T> private constructor(
         )
     }
 
+    /**
+     * Reads the characters from the root to the current position back from the Trie
+     */
+    private fun buildSequence(): String {
+        val chars = CharArray(level)
+        var current = node
+        var index = labelIndex
+        for (i in level - 1 downTo 0) {
+            chars[i] = current.charAt(index)
+            if (index > 0) {
+                index--
+            } else {
+                current = current.previous!!
+                index = current.length() - 1
+            }
+        }
+        return String(chars)
+    }
+
+    /**
+     * Returns a state stemming from this one, with only the given properties changed
+     */
+    private fun copy(
+        node: TrieNode<T> = this.node,
+        labelIndex: Int = this.labelIndex,
+        level: Int = this.level,
+        charactersSinceWordSeparator: Int = charactersSinceWordSeparatorAt(node, labelIndex),
+        isGatherState: Boolean = this.isGatherState,
+        keywordIndex: Int = this.keywordIndex,
+        numberOfMatches: Int = this.numberOfMatches,
+        numberOfErrors: Int = this.numberOfErrors,
+        startMatchIndex: Int = this.startMatchIndex,
+        endMatchIndex: Int = this.endMatchIndex,
+        swapChars: SwapChars? = this.swapChars,
+        filterColumn: BitParallelFilter.Column? = this.filterColumn
+    ): FuzzySearchState<T> {
+        return FuzzySearchState(
+            searchRequest,
+            node,
+            labelIndex,
+            level,
+            charactersSinceWordSeparator,
+            isGatherState,
+            keywordIndex,
+            numberOfMatches,
+            numberOfErrors,
+            startMatchIndex,
+            endMatchIndex,
+            swapChars,
+            filterColumn
+        )
+    }
+
+    /**
+     * Counts on the position being either this one, or the next one
+     */
+    private fun charactersSinceWordSeparatorAt(node: TrieNode<T>, labelIndex: Int): Int {
+        return when {
+            node === this.node && labelIndex == this.labelIndex -> charactersSinceWordSeparator
+            node.charAt(labelIndex).isWordSeparator() -> 0
+            else -> charactersSinceWordSeparator + 1
+        }
+    }
+
     private fun matches(): Boolean {
-        return searchCoordinates.startMatchIndex != null
-                && searchCoordinates.endMatchIndex != null
+        return startMatchIndex != NO_INDEX
+                && endMatchIndex != NO_INDEX
                 && hasMinimumNumberOfMatches()
                 && getNumberOfErrorsIncludingMissingCharacters() <= searchRequest.errorTolerance
-                && searchCoordinates.swapChars?.isEmpty() ?: true
+                && swapChars == null
     }
 
     private fun hasMinimumNumberOfMatches(): Boolean {
         val minimumRequiredMatches = searchRequest.keyword.length - searchRequest.errorTolerance
-        return searchCoordinates.numberOfMatches >= minimumRequiredMatches
+        return numberOfMatches >= minimumRequiredMatches
     }
 
-    private fun nextStates(nextNode: TrieNode<T>): Collection<FuzzySearchState<T>>? {
-        if (shouldCull(nextNode)) {
-            return null
+    /**
+     * Adds the states for the next position, if any: the first kind of state that applies, in order
+     */
+    private fun addNextStates(
+        nextNode: TrieNode<T>,
+        nextIndex: Int,
+        destination: MutableCollection<FuzzySearchState<T>>
+    ) {
+        if (shouldCull(nextNode, nextIndex)) {
+            return
+        }
+
+        val filter = searchRequest.filter
+        val nextFilterColumn = if (filter == null) {
+            null
+        } else {
+            filter.next(filterColumn!!, nextNode.charAt(nextIndex), nextNode.depthAt(nextIndex) - 1) ?: return
         }
 
-        return buildContinueState(nextNode)
-            ?: buildMatchState(nextNode)
-            ?: buildErrorState(nextNode)
-            ?: buildResetState(nextNode)
-            ?: buildGatherState(nextNode)
+        addContinueState(nextNode, nextIndex, nextFilterColumn, destination)
+                || addMatchState(nextNode, nextIndex, nextFilterColumn, destination)
+                || addErrorStates(nextNode, nextIndex, nextFilterColumn, destination)
+                || addResetState(nextNode, nextIndex, nextFilterColumn, destination)
+                || addGatherStates(nextNode, nextIndex, nextFilterColumn, destination)
     }
 
-    private fun shouldCull(nextNode: TrieNode<T>): Boolean {
+    private fun shouldCull(nextNode: TrieNode<T>, nextIndex: Int): Boolean {
         val numberOfMatchingCharactersNeeded = searchRequest.keyword.length -
-                searchCoordinates.numberOfMatches -
+                numberOfMatches -
                 searchRequest.errorTolerance
 
-        return nextNode.depth < numberOfMatchingCharactersNeeded
+        return nextNode.depthAt(nextIndex) < numberOfMatchingCharactersNeeded
     }
 
-    private fun buildContinueState(nextNode: TrieNode<T>): Collection<FuzzySearchState<T>>? {
-        return if (searchRequest.matchingStrategy == ACRONYM
-            && !searchVariables.node.string.isWordSeparator()) {
+    private fun addContinueState(
+        nextNode: TrieNode<T>,
+        nextIndex: Int,
+        nextFilterColumn: BitParallelFilter.Column?,
+        destination: MutableCollection<FuzzySearchState<T>>
+    ): Boolean {
+        if (searchRequest.matchingStrategy != ACRONYM || isAtWordSeparator()) {
+            return false
+        }
 
-            listOf(
-                FuzzySearchState(
-                    searchRequest,
-                    SearchVariables(
-                        node = nextNode,
-                        sequence = searchVariables.sequence + nextNode.string,
-                        isGatherState = false
-                    ),
-                    searchCoordinates
-                )
+        destination.add(
+            copy(
+                node = nextNode,
+                labelIndex = nextIndex,
+                level = level + 1,
+                isGatherState = false,
+                filterColumn = nextFilterColumn
             )
-        } else {
-            null
-        }
+        )
+        return true
     }
 
-    private fun buildMatchState(nextNode: TrieNode<T>): Collection<FuzzySearchState<T>>? {
-        if (searchVariables.isGatherState) {
-            return null
+    private fun addMatchState(
+        nextNode: TrieNode<T>,
+        nextIndex: Int,
+        nextFilterColumn: BitParallelFilter.Column?,
+        destination: MutableCollection<FuzzySearchState<T>>
+    ): Boolean {
+        if (isGatherState || !nextCharMatches(nextNode.charAt(nextIndex))) {
+            return false
         }
 
-        return when {
-            nextNodeMatches(nextNode) ->
-                listOf(
-                    FuzzySearchState(
-                        searchRequest,
-                        SearchVariables(
-                            node = nextNode,
-                            sequence = searchVariables.sequence + nextNode.string,
-                            isGatherState = false
-                        ),
-                        SearchCoordinates(
-                            startMatchIndex = searchCoordinates.startMatchIndex ?: searchVariables.sequence.length,
-                            endMatchIndex = searchVariables.sequence.length,
-                            keywordIndex = searchCoordinates.keywordIndex + 1,
-                            numberOfMatches = searchCoordinates.numberOfMatches + 1,
-                            numberOfErrors = searchCoordinates.numberOfErrors,
-                            swapChars = searchCoordinates.swapChars
-                        )
-                    )
-                )
-            else ->
-                null
-        }
+        destination.add(
+            copy(
+                node = nextNode,
+                labelIndex = nextIndex,
+                level = level + 1,
+                isGatherState = false,
+                startMatchIndex = if (startMatchIndex == NO_INDEX) level else startMatchIndex,
+                endMatchIndex = level,
+                keywordIndex = keywordIndex + 1,
+                numberOfMatches = numberOfMatches + 1,
+                filterColumn = nextFilterColumn
+            )
+        )
+        return true
     }
 
-    private fun nextNodeMatches(nextNode: TrieNode<T>): Boolean {
-        if (searchRequest.matchingStrategy == WILDCARD && currentSearchCharacter() == "*") {
+    private fun nextCharMatches(nextChar: Char): Boolean {
+        if (searchRequest.matchingStrategy == WILDCARD
+            && hasRemainingSearchCharacters()
+            && currentSearchCharacter() == '*') {
             return true
         }
 
-        val wasMatchingBefore = searchCoordinates.numberOfMatches > 0
+        val wasMatchingBefore = numberOfMatches > 0
 
         val matchingPreconditions = when (searchRequest.matchingStrategy) {
             ACRONYM ->
-                searchVariables.node.string.isWordSeparator()
+                isAtWordSeparator()
             FUZZY_PREFIX ->
                 wasMatchingBefore || distanceToStartWordSeparatorIsPermissible()
             EXACT_PREFIX, FUZZY_POSTFIX ->
-                wasMatchingBefore || searchVariables.node.string.isWordSeparator()
+                wasMatchingBefore || isAtWordSeparator()
             else ->
                 true
         }
 
         return matchingPreconditions
-                && searchCoordinates.keywordIndex < searchRequest.keyword.length
-                && nextNode.string.casedForMatching() == currentSearchCharacter().casedForMatching()
+                && hasRemainingSearchCharacters()
+                && nextChar.casedForMatching() == currentSearchCharacter().casedForMatching()
     }
 
-    private fun buildErrorState(nextNode: TrieNode<T>): Collection<FuzzySearchState<T>>? {
-        if (searchVariables.isGatherState) {
-            return null
+    private fun addErrorStates(
+        nextNode: TrieNode<T>,
+        nextIndex: Int,
+        nextFilterColumn: BitParallelFilter.Column?,
+        destination: MutableCollection<FuzzySearchState<T>>
+    ): Boolean {
+        if (isGatherState) {
+            return false
         }
 
-        val swapSatisfied = searchCoordinates.swapChars.getMatching(nextNode)
+        val nextChar = nextNode.charAt(nextIndex)
+        val swapSatisfied = swapChars.getMatching(nextChar)
 
         return when {
             swapSatisfied != null -> {
-                listOf(
-                    FuzzySearchState(
-                        searchRequest,
-                        SearchVariables(
-                            node = nextNode,
-                            sequence = searchVariables.sequence + nextNode.string,
-                            isGatherState = false
-                        ),
-                        SearchCoordinates(
-                            startMatchIndex = searchCoordinates.startMatchIndex ?: searchVariables.sequence.length,
-                            endMatchIndex = searchVariables.sequence.length,
-                            keywordIndex = searchCoordinates.keywordIndex + 1,
-                            numberOfMatches = searchCoordinates.numberOfMatches,
-                            numberOfErrors = searchCoordinates.numberOfErrors + 1,
-                            swapChars = searchCoordinates.swapChars!!.filter { it != swapSatisfied }
-                        )
+                destination.add(
+                    copy(
+                        node = nextNode,
+                        labelIndex = nextIndex,
+                        level = level + 1,
+                        isGatherState = false,
+                        startMatchIndex = if (startMatchIndex == NO_INDEX) level else startMatchIndex,
+                        endMatchIndex = level,
+                        keywordIndex = keywordIndex + 1,
+                        numberOfErrors = numberOfErrors + 1,
+                        swapChars = swapChars.without(swapSatisfied),
+                        filterColumn = nextFilterColumn
                     )
                 )
+                true
+            }
+            shouldProduceErrorStates() -> {
+                addErrorStrategies(nextNode, nextIndex, nextChar, nextFilterColumn, destination)
+                true
             }
-            shouldProduceErrorStates() ->
-                getErrorStrategies(nextNode).map {
-                    FuzzySearchState(
-                        searchRequest,
-                        SearchVariables(
-                            node = it.node,
-                            sequence = it.sequence,
-                            isGatherState = false
-                        ),
-                        SearchCoordinates(
-                            startMatchIndex = it.startMatchIndex,
-                            endMatchIndex = searchCoordinates.endMatchIndex,
-                            keywordIndex = it.searchIndex,
-                            numberOfMatches = searchCoordinates.numberOfMatches,
-                            numberOfErrors = searchCoordinates.numberOfErrors + 1,
-                            swapChars = it.swapChar?.let { swapChar ->
-                                (searchCoordinates.swapChars ?: mutableListOf()) + swapChar
-                            }
-                        )
-                    )
-                }
             else ->
-                null
+                false
         }
     }
 
     private fun shouldProduceErrorStates(): Boolean {
-        val hasNoPendingSwaps = searchCoordinates.swapChars?.isEmpty() ?: true
-        val wasMatchingBefore = searchCoordinates.numberOfMatches > 0
-        val hasSearchCharacters = searchCoordinates.keywordIndex + 1 < searchRequest.keyword.length
-        val hasErrorAllowance = searchCoordinates.numberOfErrors < searchRequest.errorTolerance
+        val hasNoPendingSwaps = swapChars == null
+        val wasMatchingBefore = numberOfMatches > 0
+        val hasSearchCharacters = keywordIndex + 1 < searchRequest.keyword.length
+        val hasErrorAllowance = numberOfErrors < searchRequest.errorTolerance
 
         return hasSearchCharacters
                 && hasErrorAllowance
@@ -308,162 +440,196 @@ class FuzzySearchState<T> private constructor(
                 }
     }
 
-    private fun getErrorStrategies(nextNode: TrieNode<T>): List<ErrorStrategy<T>> {
+    private fun addErrorStrategies(
+        nextNode: TrieNode<T>,
+        nextIndex: Int,
+        nextChar: Char,
+        nextFilterColumn: BitParallelFilter.Column?,
+        destination: MutableCollection<FuzzySearchState<T>>
+    ) {
         // 1. Swap: increment searchIndex and go to the next node, and keep track of swap letters
         if (searchRequest.matchingStrategy == ADJACENT_SWAP || searchRequest.matchingStrategy == SYMMETRICAL_SWAP) {
-            val typoSwapStrategy = ErrorStrategy(
-                nextNode,
-                searchCoordinates.keywordIndex + 1,
-                searchVariables.sequence + nextNode.string,
-                SwapChars(currentSearchCharacter(), nextNode.string),
-                searchCoordinates.startMatchIndex ?: searchVariables.sequence.length
+            destination.add(
+                errorState(
+                    nextNode,
+                    nextIndex,
+                    keywordIndex + 1,
+                    level + 1,
+                    if (startMatchIndex == NO_INDEX) level else startMatchIndex,
+                    swapChars.plus(currentSearchCharacter(), nextChar),
+                    nextFilterColumn
+                )
             )
-            return listOf(typoSwapStrategy)
+            return
         }
 
         // 2. misspelling: increment searchIndex and go to the next node
-        val misspellingStrategy = ErrorStrategy(
-            nextNode,
-            searchCoordinates.keywordIndex + 1,
-            searchVariables.sequence + nextNode.string,
-            null,
-            searchCoordinates.startMatchIndex
-        )
+        destination.add(errorState(
+            nextNode, nextIndex, keywordIndex + 1, level + 1, startMatchIndex, null, nextFilterColumn))
 
         // 3. missing letter in data: increment searchIndex and stay at the previous node
-        val missingTargetLetterStrategy = ErrorStrategy(
-            searchVariables.node,
-            searchCoordinates.keywordIndex + 1,
-            searchVariables.sequence,
-            null,
-            searchCoordinates.startMatchIndex
-        )
+        destination.add(errorState(
+            node, labelIndex, keywordIndex + 1, level, startMatchIndex, null, filterColumn))
 
         // 4. missing letter in search keyword: keep searchIndex the same and go to the next node
-        val missingSourceLetterStrategy = ErrorStrategy(
-            nextNode,
-            searchCoordinates.keywordIndex,
-            searchVariables.sequence + nextNode.string,
-            null,
-            searchCoordinates.startMatchIndex
-        )
+        destination.add(errorState(
+            nextNode, nextIndex, keywordIndex, level + 1, startMatchIndex, null, nextFilterColumn))
+    }
 
-        return listOf(misspellingStrategy, missingTargetLetterStrategy, missingSourceLetterStrategy)
+    private fun errorState(
+        node: TrieNode<T>,
+        labelIndex: Int,
+        keywordIndex: Int,
+        level: Int,
+        startMatchIndex: Int,
+        swapChars: SwapChars?,
+        filterColumn: BitParallelFilter.Column?
+    ): FuzzySearchState<T> {
+        return copy(
+            node = node,
+            labelIndex = labelIndex,
+            level = level,
+            isGatherState = false,
+            startMatchIndex = startMatchIndex,
+            keywordIndex = keywordIndex,
+            numberOfErrors = numberOfErrors + 1,
+            swapChars = swapChars,
+            filterColumn = filterColumn
+        )
     }
 
-    private fun buildResetState(
+    private fun addResetState(
         nextNode: TrieNode<T>,
-        forceReturn: Boolean = false
-    ): Collection<FuzzySearchState<T>>? {
-
-        return when {
-            forceReturn || (!searchVariables.isGatherState && !matches()) ->
-                listOf(
-                    FuzzySearchState(
-                        searchRequest,
-                        SearchVariables(
-                            node = nextNode,
-                            sequence = searchVariables.sequence + nextNode.string,
-                            isGatherState = false
-                        ),
-                        searchCoordinates = SearchCoordinates(
-                            startMatchIndex = null,
-                            endMatchIndex = null,
-                            keywordIndex = 0,
-                            numberOfMatches = 0,
-                            numberOfErrors = 0,
-                            swapChars = null
-                        )
-                    )
-                )
-            else ->
-                null
+        nextIndex: Int,
+        nextFilterColumn: BitParallelFilter.Column?,
+        destination: MutableCollection<FuzzySearchState<T>>,
+        force: Boolean = false
+    ): Boolean {
+        if (!force && (isGatherState || matches())) {
+            return false
         }
-    }
 
-    private fun buildGatherState(nextNode: TrieNode<T>): List<FuzzySearchState<T>> {
-        val gatherStates = mutableListOf<FuzzySearchState<T>>()
+        destination.add(
+            FuzzySearchState(
+                searchRequest,
+                nextNode,
+                nextIndex,
+                level + 1,
+                charactersSinceWordSeparatorAt(nextNode, nextIndex),
+                isGatherState = false,
+                keywordIndex = 0,
+                numberOfMatches = 0,
+                numberOfErrors = 0,
+                startMatchIndex = NO_INDEX,
+                endMatchIndex = NO_INDEX,
+                swapChars = null,
+                filterColumn = nextFilterColumn
+            )
+        )
+        return true
+    }
 
-        val defaultGatherState = FuzzySearchState(
-            searchRequest,
-            SearchVariables(
+    private fun addGatherStates(
+        nextNode: TrieNode<T>,
+        nextIndex: Int,
+        nextFilterColumn: BitParallelFilter.Column?,
+        destination: MutableCollection<FuzzySearchState<T>>
+    ): Boolean {
+        destination.add(
+            copy(
                 node = nextNode,
-                sequence = searchVariables.sequence + nextNode.string,
+                labelIndex = nextIndex,
+                level = level + 1,
                 isGatherState = true,
-            ),
-            searchCoordinates
+                filterColumn = nextFilterColumn
+            )
         )
 
-        gatherStates.add(defaultGatherState)
-
         // we spin off a new reset state, in case we find a better match further in the string.
         // we must only do this once: if this is the first time this state enters into the gather state.
-        val notPerfectMatch = searchRequest.keyword.length != searchCoordinates.numberOfMatches
-        if (!searchVariables.isGatherState && notPerfectMatch) {
-            gatherStates.addAll(buildResetState(nextNode, true)!!)
+        val notPerfectMatch = searchRequest.keyword.length != numberOfMatches
+        if (!isGatherState && notPerfectMatch) {
+            addResetState(nextNode, nextIndex, nextFilterColumn, destination, true)
         }
 
-        return gatherStates
+        return true
+    }
+
+    private fun hasRemainingSearchCharacters(): Boolean {
+        return keywordIndex < searchRequest.keyword.length
     }
 
-    private fun currentSearchCharacter(): String {
-        return searchRequest.keyword[searchCoordinates.keywordIndex].toString()
+    private fun currentSearchCharacter(): Char {
+        return searchRequest.keyword[keywordIndex]
     }
 
     private fun getNumberOfErrorsIncludingMissingCharacters(): Int {
-        val unmatchedCharacters = searchRequest.keyword.length - searchCoordinates.keywordIndex
+        val unmatchedCharacters = searchRequest.keyword.length - keywordIndex
         if (unmatchedCharacters < 0) {
             throw AssertionError("Number of unmatched characters should never be negative")
         }
-        return searchCoordinates.numberOfErrors +
+        return numberOfErrors +
                 unmatchedCharacters
     }
 
     private fun distanceToStartWordSeparatorIsPermissible(): Boolean {
-        val indexOfLastWordSeparator = searchVariables.sequence.indexOfLastWordSeparator() ?: -1
-        val distanceToWordSeparator = searchVariables.sequence.length - indexOfLastWordSeparator - 2
-        return distanceToWordSeparator <= searchCoordinates.numberOfErrors
+        val distanceToWordSeparator = charactersSinceWordSeparator - 1
+        return distanceToWordSeparator <= numberOfErrors
     }
 
-    private fun matchedWholeSequence(startMatchIndex: Int, endMatchIndex: Int): Boolean {
-        return startMatchIndex == 0 && endMatchIndex >= searchVariables.sequence.length - 1
+    private fun matchedWholeSequence(sequence: String, startMatchIndex: Int, endMatchIndex: Int): Boolean {
+        return startMatchIndex == 0 && endMatchIndex >= sequence.length - 1
     }
 
-    private fun matchedWholeWord(startMatchIndex: Int, endMatchIndex: Int): Boolean {
-        return searchVariables.sequence.isWordSeparatorAt(startMatchIndex - 1)
-                && searchVariables.sequence.isWordSeparatorAt(endMatchIndex + 1)
+    private fun matchedWholeWord(sequence: String, startMatchIndex: Int, endMatchIndex: Int): Boolean {
+        return sequence.isWordSeparatorAt(startMatchIndex - 1)
+                && sequence.isWordSeparatorAt(endMatchIndex + 1)
     }
 
     private fun String.isWordSeparatorAt(index: Int): Boolean {
-        return index < 0 || index >= this.length || this[index].toString().isWordSeparator()
+        return index < 0 || index >= this.length || this[index].isWordSeparator()
     }
 
-    private fun String.isWordSeparator(): Boolean {
-        return this == "" /* == root */ || this.matches(wordSeparatorRegex)
+    private fun isAtWordSeparator(): Boolean {
+        return charactersSinceWordSeparator == 0
     }
 
     private fun CharSequence.indexOfLastWordSeparator(endIndex: Int = this.length - 1): Int? {
-        return (0..endIndex).reversed().firstOrNull {
-            this[it].toString().matches(wordSeparatorRegex)
+        for (i in endIndex downTo 0) {
+            if (this[i].isWordSeparator()) {
+                return i
+            }
         }
+        return null
     }
 
     private fun CharSequence.indexOfFirstWordSeparator(startIndex: Int = 0): Int? {
-        return (startIndex until this.length).firstOrNull {
-            this[it].toString().matches(wordSeparatorRegex)
+        for (i in startIndex until this.length) {
+            if (this[i].isWordSeparator()) {
+                return i
+            }
         }
+        return null
     }
 
-    private fun List<SwapChars>?.getMatching(nextNode: TrieNode<T>): SwapChars? {
-        return this?.firstOrNull {
-            it.fromSource.casedForMatching() == nextNode.string.casedForMatching()
-                    && it.fromTarget.casedForMatching() == currentSearchCharacter().casedForMatching()
+    private fun SwapChars?.getMatching(nextChar: Char): SwapChars? {
+        if (!hasRemainingSearchCharacters()) {
+            return null
         }
+        var swap = this
+        while (swap != null) {
+            if (swap.fromSource.casedForMatching() == nextChar.casedForMatching()
+                && swap.fromTarget.casedForMatching() == currentSearchCharacter().casedForMatching()) {
+                return swap
+            }
+            swap = swap.next
+        }
+        return null
     }
 
-    private fun String.casedForMatching(): String {
+    private fun Char.casedForMatching(): Char {
         return if (searchRequest.caseInsensitive) {
-            this.lowercase()
+            this.lowercaseChar()
         } else {
             this
         }
@@ -471,18 +637,27 @@ class FuzzySearchState<T> private constructor(
 
     companion object {
 
+        private const val NO_INDEX = -1
+
         fun <T> getInitialStates(
             root: TrieNode<T>,
             keyword: String,
             errorTolerance: Int,
             matchingStrategy: FuzzyMatchingStrategy,
-            caseInsensitive: Boolean
+            caseInsensitive: Boolean,
+            useBitParallelFilter: Boolean = true
         ): Collection<FuzzySearchState<T>> {
 
             val initialStates = mutableListOf<FuzzySearchState<T>>()
 
+            // built from the whole keyword, for all the initial states: all their results are within
+            // the error tolerance of it
+            val filter = BitParallelFilter
+                .forSearch(keyword, errorTolerance, matchingStrategy, caseInsensitive)
+                ?.takeIf { useBitParallelFilter }
+
             val defaultInitialState = FuzzySearchState(
-                root, keyword, 0, errorTolerance, matchingStrategy, caseInsensitive)
+                root, keyword, 0, errorTolerance, matchingStrategy, caseInsensitive, filter)
 
             initialStates.add(defaultInitialState)
 
@@ -495,7 +670,8 @@ class FuzzySearchState<T> private constructor(
                         numberOfPredeterminedErrors = i,
                         errorTolerance - i,
                         matchingStrategy,
-                        caseInsensitive
+                        caseInsensitive,
+                        filter
                     )
                     initialStates.add(stateWithPredeterminedError)
                 }
@@ -514,7 +690,8 @@ class FuzzySearchState<T> private constructor(
             numberOfPredeterminedErrors: Int,
             errorTolerance: Int,
             matchingStrategy: FuzzyMatchingStrategy,
-            caseInsensitive: Boolean
+            caseInsensitive: Boolean,
+            filter: BitParallelFilter?
         ): FuzzySearchState<T> {
 
             // this class only work works when beginning with the root node
@@ -528,22 +705,22 @@ class FuzzySearchState<T> private constructor(
                     keyword,
                     numberOfPredeterminedErrors,
                     errorTolerance,
-                    caseInsensitive
-                ),
-                SearchVariables(
-                    node = root,
-                    sequence = "",
-                    isGatherState = false,
+                    caseInsensitive,
+                    filter
                 ),
-                SearchCoordinates(
-                    keywordIndex = 0,
-                    numberOfMatches= 0,
-                    numberOfErrors = 0,
-                    startMatchIndex = null,
-                    endMatchIndex = null,
-                    swapChars = null
-                )
+                node = root,
+                labelIndex = -1,
+                level = 0,
+                charactersSinceWordSeparator = 0,
+                isGatherState = false,
+                keywordIndex = 0,
+                numberOfMatches = 0,
+                numberOfErrors = 0,
+                startMatchIndex = NO_INDEX,
+                endMatchIndex = NO_INDEX,
+                swapChars = null,
+                filterColumn = filter?.initialColumn()
             )
         }
     }
-}
\ No newline at end of file
+}
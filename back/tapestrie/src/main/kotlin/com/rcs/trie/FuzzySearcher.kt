@@ -1,81 +1,197 @@
 package com.rcs.trie
 
 import kotlinx.coroutines.*
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Shared by all the coroutines of a single search, without locking: each coroutine collects its results
+ * on its own, and hands them over when done, to be merged at the end; meanwhile, the worst of the best results
+ * found by any coroutine is published to all of them, so they can all prune the Trie with it.
+ * Coroutines also report the states they visit, and all stop once any of them finds the budget exhausted.
+ */
+private class SharedResults<T>(private val limit: Int, private val budget: SearchBudget) {
+
+    private val handedOver = ConcurrentLinkedQueue<FuzzySearchResults<T>>()
+
+    private val worstOfBest = AtomicReference<TrieSearchResult<T>?>()
+
+    private val deadline = if (budget.timeoutMillis == SearchBudget.NO_LIMIT) Long.MAX_VALUE
+        else System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget.timeoutMillis)
+
+    private val visitedStates = AtomicLong()
+
+    @Volatile
+    var truncated = false
+        private set
+
+    fun newLocalResults(): FuzzySearchResults<T> {
+        return FuzzySearchResults(limit)
+    }
+
+    fun handOver(localResults: FuzzySearchResults<T>) {
+        handedOver.add(localResults)
+    }
+
+    /**
+     * If a coroutine has as many results as the limit, all better than its worst one,
+     * then the final results cannot be worse than that either
+     */
+    fun publishWorstOfBest(worst: TrieSearchResult<T>) {
+        worstOfBest.accumulateAndGet(worst) { current, new ->
+            if (current == null || TrieSearchResultComparator.byBestMatchFirst.compare(new, current) < 0) new else current
+        }
+    }
+
+    fun excludesResultsWith(maximumNumberOfMatches: Int, minimumStringLength: Int): Boolean {
+        val worst = worstOfBest.get() ?: return false
+        return TrieSearchResultComparator.isBetterThanAnyResultWith(worst, maximumNumberOfMatches, minimumStringLength)
+    }
+
+    /**
+     * Adds the states a coroutine visited since it last reported, and returns whether the search must stop
+     */
+    fun isBudgetExhaustedAfter(newlyVisitedStates: Int): Boolean {
+        if (!truncated
+            && (visitedStates.addAndGet(newlyVisitedStates.toLong()) > budget.maxVisitedStates
+                    || System.nanoTime() > deadline)) {
+            truncated = true
+        }
+        return truncated
+    }
+
+    fun merge(): List<TrieSearchResult<T>> {
+        val merged = FuzzySearchResults<T>(limit)
+        handedOver.forEach { merged.addAll(it) }
+        return merged.toList()
+    }
+}
 
 class FuzzySearcher {
 
     companion object {
 
-        private val updateLock = Any()
+        // the number of states in the stack of a coroutine above which it is split with a new coroutine
+        private const val SPLIT_THRESHOLD = 64
+
+        // the number of states a coroutine visits between checks of the budget and of its cancellation
+        private const val BUDGET_CHECK_INTERVAL = 64
 
         suspend fun <T> search(
             root: TrieNode<T>,
             search: String,
             errorTolerance: Int,
-            matchingStrategy: FuzzyMatchingStrategy
-        ): List<TrieSearchResult<T>> = coroutineScope {
+            matchingStrategy: FuzzyMatchingStrategy,
+            limit: Int,
+            useBitParallelFilter: Boolean = true
+        ): List<TrieSearchResult<T>> {
+            return searchWithin(root, search, errorTolerance, matchingStrategy, limit, SearchBudget.UNLIMITED,
+                useBitParallelFilter).results
+        }
+
+        /**
+         * Stops once the budget is exhausted, returning the best results found so far, flagged as truncated;
+         * the search also stops, without results, as soon as the calling coroutine is cancelled
+         */
+        suspend fun <T> searchWithin(
+            root: TrieNode<T>,
+            search: String,
+            errorTolerance: Int,
+            matchingStrategy: FuzzyMatchingStrategy,
+            limit: Int,
+            budget: SearchBudget,
+            useBitParallelFilter: Boolean = true
+        ): TrieSearchResults<T> = coroutineScope {
 
             if (search.isEmpty() || errorTolerance < 0 || errorTolerance > search.length) {
                 throw IllegalArgumentException()
             }
 
+            val caseInsensitive = true
+
             val initialStates = FuzzySearchState.getInitialStates(
-                root, search, errorTolerance, matchingStrategy, true)
-            val results = mutableMapOf<String, TrieSearchResult<T>>()
+                root, search, errorTolerance, matchingStrategy, caseInsensitive, useBitParallelFilter)
+            val results = SharedResults<T>(limit, budget)
 
-            // Parallelizes only top-level of the Trie:
-            // one coroutine for each state derived from each node directly beneath the root
+            // starts with one coroutine for each state derived from each node directly beneath the root;
+            // coroutines then split their work with new ones as it grows (see launchSearchJob)
             val topLevelStates = initialStates
                 .map { it.nextStates() }
                 .flatten()
 
-            val jobs = topLevelStates.map {
-                launch(Dispatchers.Default) {
-                    searchJob(it, results)
+            // returns once all coroutines launched in it, and the ones these launch in turn, are done
+            coroutineScope {
+                topLevelStates.forEach {
+                    launchSearchJob(ArrayDeque(listOf(it)), results)
                 }
             }
 
-            jobs.forEach { it.join() }
-
-            // clean up resources to prevent memory hoarding
-            System.gc()
-
-            results.values.sortedWith(TrieSearchResultComparator.byBestMatchFirst)
+            TrieSearchResults(results.merge(), results.truncated)
         }
 
-        private fun <T> searchJob(
-            initialState: FuzzySearchState<T>,
-            results: MutableMap<String, TrieSearchResult<T>>
+        /**
+         * Explores the states depth-first, so the stack only holds the states along the current path
+         * (and their siblings), instead of a whole level of the Trie as a breadth-first queue would.
+         * Once the results are full, states are not explored further if none of their results could make it into them.
+         *
+         * Since the Trie can be very unbalanced (e.g. many more words start with 's' than with 'x'),
+         * whenever the stack grows past a threshold, half of it is handed to a new coroutine,
+         * so the work is balanced among all threads regardless of the shape of the Trie.
+         *
+         * Every few states, the coroutine reports how many it visited, and gives up the rest of its stack
+         * if the budget is exhausted, or if the search was cancelled.
+         */
+        private fun <T> CoroutineScope.launchSearchJob(
+            stack: ArrayDeque<FuzzySearchState<T>>,
+            results: SharedResults<T>
         ) {
-            val queue = ArrayDeque<FuzzySearchState<T>>()
-            queue.add(initialState)
+            launch(Dispatchers.Default) {
+                val localResults = results.newLocalResults()
+                var visitedStates = 0
+
+                while (stack.isNotEmpty()) {
+                    if (++visitedStates == BUDGET_CHECK_INTERVAL) {
+                        visitedStates = 0
+                        ensureActive()
+                        if (results.isBudgetExhaustedAfter(BUDGET_CHECK_INTERVAL)) {
+                            break
+                        }
+                    }
+
+                    val state = stack.removeLast()
+
+                    val searchResult = if (state.hasSearchResult()) state.buildSearchResult() else null
+                    if (searchResult != null && localResults.add(searchResult)) {
+                        localResults.worstWhenFull()?.let { results.publishWorstOfBest(it) }
+                    }
+
+                    if (results.excludesResultsWith(state.maximumNumberOfMatchesInNextStates(), state.sequenceLength() + 1)) {
+                        continue
+                    }
 
-            while (queue.isNotEmpty()) {
-                val state = queue.removeFirst()
+                    state.addNextStatesTo(stack)
 
-                if (state.hasSearchResult()) {
-                    val searchResult = state.buildSearchResult()
-                    results.putOnlyNewOrBetter(searchResult)
+                    if (stack.size > SPLIT_THRESHOLD) {
+                        launchSearchJob(stack.splitOffBottomHalf(), results)
+                    }
                 }
 
-                queue.addAll(state.nextStates())
+                results.handOver(localResults)
             }
         }
 
-        private fun <T> MutableMap<String, TrieSearchResult<T>>.putOnlyNewOrBetter(newMatch: TrieSearchResult<T>) {
-            synchronized(updateLock) {
-                this[newMatch.string] = when (val existing = this[newMatch.string]) {
-                    null -> newMatch
-                    else -> {
-                        val compareResult = TrieSearchResultComparator.byBestMatchFirst.compare(newMatch, existing)
-                        val newMatchIsBetter = compareResult == -1
-                        when {
-                            newMatchIsBetter -> newMatch
-                            else -> existing
-                        }
-                    }
-                }
+        /**
+         * Removes and returns the bottom half of the stack:
+         * the states closest to the root, which likely have the most work beneath them
+         */
+        private fun <T> ArrayDeque<FuzzySearchState<T>>.splitOffBottomHalf(): ArrayDeque<FuzzySearchState<T>> {
+            val bottomHalf = ArrayDeque<FuzzySearchState<T>>(this.size / 2)
+            repeat(this.size / 2) {
+                bottomHalf.addLast(this.removeFirst())
             }
+            return bottomHalf
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,203 @@
+package com.rcs.trie
+
+import java.util.Collections
+
+/**
+ * A deterministic Levenshtein automaton: it accepts the strings that start with a prefix within `errorTolerance`
+ * edits (insertions, deletions or substitutions) of the keyword. Matching is case-insensitive.
+ *
+ * Each state stands for a row of the edit distance matrix of the keyword against the characters read so far,
+ * with distances capped at `errorTolerance + 1`, so there are finitely many rows, all computed when compiled.
+ * Characters that are not in the keyword all lead to the same states, so the transitions are kept for
+ * the keyword's characters, plus one for any other character. Reading a character then costs a table lookup,
+ * and as soon as no distance in the row is within the error tolerance there is no state to go to.
+ *
+ * Compiled automata are immutable, so they are cached and shared by concurrent searches.
+ *
+ * The number of states grows linearly with the length of the keyword, but about threefold with each error
+ * allowed, and all are compiled upfront, so keywords are limited to [MAX_KEYWORD_LENGTH] characters and
+ * error tolerances to [MAX_ERROR_TOLERANCE]: an automaton then has at most about 2,000 states.
+ */
+internal class LevenshteinAutomaton private constructor(keyword: String, private val errorTolerance: Int) {
+
+    // the distinct characters of the keyword, sorted, for binary search; any other character is the last class
+    private val charClasses: CharArray = keyword.toSet().sorted().toCharArray()
+
+    private val numberOfCharClasses = charClasses.size + 1
+
+    // for each state and each class of characters, the next state, or DEAD
+    private val transitions: IntArray
+
+    // for each state, the distance from the whole keyword to the characters read so far
+    private val distances: IntArray
+
+    init {
+        val keywordClasses = IntArray(keyword.length) { charClasses.binarySearch(keyword[it]) }
+        val rows = mutableListOf<IntArray>()
+        val stateByRow = mutableMapOf<String, Int>()
+        val transitionList = mutableListOf<Int>()
+
+        fun stateOf(row: IntArray): Int {
+            val key = String(CharArray(row.size) { row[it].toChar() })
+            return stateByRow.getOrPut(key) {
+                rows.add(row)
+                rows.size - 1
+            }
+        }
+
+        // before reading anything, the distance to each prefix of the keyword is its length (all missing)
+        stateOf(IntArray(keyword.length + 1) { minOf(it, errorTolerance + 1) })
+
+        // breadth-first: states are numbered in the order they are found, so rows[state] is always there
+        var state = 0
+        while (state < rows.size) {
+            val row = rows[state]
+            for (charClass in 0 until numberOfCharClasses) {
+                val nextRow = nextRow(row, charClass, keywordClasses)
+                transitionList.add(if (nextRow.any { it <= errorTolerance }) stateOf(nextRow) else DEAD)
+            }
+            state++
+        }
+
+        transitions = transitionList.toIntArray()
+        distances = IntArray(rows.size) { rows[it][keyword.length] }
+    }
+
+    private fun nextRow(row: IntArray, charClass: Int, keywordClasses: IntArray): IntArray {
+        val nextRow = IntArray(row.size)
+        nextRow[0] = minOf(row[0] + 1, errorTolerance + 1)
+        for (i in 1 until row.size) {
+            val substitution = row[i - 1] + if (keywordClasses[i - 1] == charClass) 0 else 1
+            val insertion = row[i] + 1
+            val deletion = nextRow[i - 1] + 1
+            nextRow[i] = minOf(substitution, insertion, deletion, errorTolerance + 1)
+        }
+        return nextRow
+    }
+
+    /**
+     * Returns the next state, or DEAD if no string starting with the characters read so far can be accepted
+     */
+    fun step(state: Int, char: Char): Int {
+        val charClass = charClasses.binarySearch(char.lowercaseChar())
+        val classIndex = if (charClass >= 0) charClass else numberOfCharClasses - 1
+        return transitions[state * numberOfCharClasses + classIndex]
+    }
+
+    /**
+     * The edit distance from the keyword to the characters read so far, if within the error tolerance
+     */
+    fun distance(state: Int): Int {
+        return distances[state]
+    }
+
+    fun accepts(state: Int): Boolean {
+        return distances[state] <= errorTolerance
+    }
+
+    /**
+     * The state at the start of a node, with the closest distance to the keyword from any string
+     * read up to there, and that string
+     */
+    private class Position<T>(
+        val node: TrieNode<T>,
+        val state: Int,
+        val closestDistance: Int,
+        val sequence: String
+    )
+
+    /**
+     * Returns the strings beneath the root accepted by the automaton, closest first, then alphabetically
+     */
+    fun <T> matchPrefixes(root: TrieNode<T>): Map<String, T> {
+        val matches = mutableListOf<Pair<TrieEntry<T>, Int>>()
+        val stack = ArrayDeque<Position<T>>()
+
+        val initialDistance = if (accepts(INITIAL)) distance(INITIAL) else NO_MATCH
+        root.next.forEach { stack.addLast(Position(it, INITIAL, initialDistance, "")) }
+
+        while (stack.isNotEmpty()) {
+            val position = stack.removeLast()
+            val node = position.node
+            var state = position.state
+            var closestDistance = position.closestDistance
+
+            for (i in 0 until node.length()) {
+                state = step(state, node.charAt(i))
+                if (state == DEAD) {
+                    break
+                }
+                if (accepts(state)) {
+                    closestDistance = minOf(closestDistance, distance(state))
+                }
+            }
+
+            if (state == DEAD || closestDistance == 0) {
+                // no string beneath can get any closer
+                if (closestDistance != NO_MATCH) {
+                    TrieIterator(node).forEach {
+                        matches.add(Pair(TrieEntry(position.sequence + it.string, it.value), closestDistance))
+                    }
+                }
+                continue
+            }
+
+            val sequence = position.sequence + node.label()
+
+            // a concurrent remove can clear the value at any time, so it is only read once
+            val value = node.value
+            if (value != null && closestDistance != NO_MATCH) {
+                matches.add(Pair(TrieEntry(sequence, value), closestDistance))
+            }
+
+            node.next.forEach { stack.addLast(Position(it, state, closestDistance, sequence)) }
+        }
+
+        return matches
+            .sortedWith(compareBy({ it.second }, { it.first.string }))
+            .associateTo(LinkedHashMap()) { it.first.string to it.first.value }
+    }
+
+    companion object {
+
+        const val INITIAL = 0
+
+        const val DEAD = -1
+
+        private const val NO_MATCH = Int.MAX_VALUE
+
+        const val MAX_KEYWORD_LENGTH = 32
+
+        const val MAX_ERROR_TOLERANCE = 3
+
+        private const val CACHE_SIZE = 256
+
+        private data class CacheKey(val keyword: String, val errorTolerance: Int)
+
+        // least recently used first, so type-ahead keeps the automata for the prefixes it keeps re-sending
+        private val cache = Collections.synchronizedMap(
+            object : LinkedHashMap<CacheKey, LevenshteinAutomaton>(16, 0.75f, true) {
+                override fun removeEldestEntry(eldest: MutableMap.MutableEntry<CacheKey, LevenshteinAutomaton>?): Boolean {
+                    return size > CACHE_SIZE
+                }
+            }
+        )
+
+        /**
+         * Returns the automaton for the keyword and error tolerance, compiling it only if not cached.
+         * Throws IllegalArgumentException if either is above its limit, before compiling anything.
+         */
+        fun compile(keyword: String, errorTolerance: Int): LevenshteinAutomaton {
+            if (keyword.isEmpty() || errorTolerance < 0) {
+                throw IllegalArgumentException()
+            }
+            if (keyword.length > MAX_KEYWORD_LENGTH || errorTolerance > MAX_ERROR_TOLERANCE) {
+                throw IllegalArgumentException("Fuzzy prefix searches allow keywords of up to $MAX_KEYWORD_LENGTH " +
+                        "characters, and up to $MAX_ERROR_TOLERANCE errors")
+            }
+
+            val key = CacheKey(String(CharArray(keyword.length) { keyword[it].lowercaseChar() }), errorTolerance)
+            return cache.getOrPut(key) { LevenshteinAutomaton(key.keyword, errorTolerance) }
+        }
+    }
+}
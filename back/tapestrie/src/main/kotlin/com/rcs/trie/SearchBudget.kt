@@ -0,0 +1,36 @@
+package com.rcs.trie
+
+/**
+ * How much a single search may take: once it has run for `timeoutMillis`, or visited about `maxVisitedStates`
+ * states of the Trie, it stops, and returns the best results found so far, flagged as truncated.
+ * Both are checked every few dozen states, so a search may slightly overrun them.
+ */
+data class SearchBudget @JvmOverloads constructor(
+    val timeoutMillis: Long = NO_LIMIT,
+    val maxVisitedStates: Long = NO_LIMIT
+) {
+
+    init {
+        if (timeoutMillis < 0 || maxVisitedStates < 0) {
+            throw IllegalArgumentException()
+        }
+    }
+
+    companion object {
+
+        const val NO_LIMIT = Long.MAX_VALUE
+
+        @JvmField
+        val UNLIMITED = SearchBudget()
+
+        @JvmStatic
+        fun ofMillis(timeoutMillis: Long): SearchBudget {
+            return SearchBudget(timeoutMillis = timeoutMillis)
+        }
+
+        @JvmStatic
+        fun ofVisitedStates(maxVisitedStates: Long): SearchBudget {
+            return SearchBudget(maxVisitedStates = maxVisitedStates)
+        }
+    }
+}
@@ -1,32 +1,44 @@
 package com.rcs.trie
 
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.future.future
 import kotlinx.coroutines.runBlocking
-import kotlin.math.max
-import kotlin.properties.Delegates
-
-class Trie<T>: Iterable<TrieEntry<T>> {
+import java.util.concurrent.CompletableFuture
+
+/**
+ * When `compressed`, chains of nodes with a single child are merged into one node holding
+ * the whole chain as its label (a.k.a. radix or Patricia trie), which takes much less memory
+ * when the strings stored are long or share few prefixes. Searches behave the same either way.
+ *
+ * Writes (put, remove, clear) are serialized, while reads never lock: nodes are published with their
+ * children copied on write, so readers walk the Trie concurrently with a writer, without blocking it.
+ */
+class Trie<T> @JvmOverloads constructor(val compressed: Boolean = false): Iterable<TrieEntry<T>> {
 
     private val depthUpdateLock = Any()
 
-    private lateinit var root: TrieNode<T>
+    @Volatile
+    internal var root: TrieNode<T> = TrieNode.root()
+        private set
 
-    private var _size: Int by Delegates.vetoable(0) { _, _, newValue ->
-        if (newValue < 0) {
-            throw IllegalStateException("Size should never be < 0")
-        } else {
-            true
+    @Volatile
+    private var _size: Int = 0
+        set(value) {
+            if (value < 0) {
+                throw IllegalStateException("Size should never be < 0")
+            }
+            field = value
         }
-    }
 
     val size: Int get() = _size
 
-    init {
-        clear()
-    }
-
     fun clear() {
-        _size = 0
-        root = TrieNode("", null, 0, mutableSetOf(), null)
+        synchronized(depthUpdateLock) {
+            _size = 0
+            root = TrieNode.root()
+        }
     }
 
     fun depth(): Int {
@@ -45,56 +57,24 @@ class Trie<T>: Iterable<TrieEntry<T>> {
      * Returns the previous value, if any, associated with this key (inputString)
      */
     fun put(inputString: String, value: T): T? {
-        if (inputString.isEmpty()) {
-            throw IllegalArgumentException("Cannot add an empty string")
+        synchronized(depthUpdateLock) {
+            return insert(inputString, value)
         }
+    }
 
-        var previousValue: T? = null
-
+    /**
+     * Puts all the entries, in any order, taking the lock only once for all of them instead of once per entry
+     */
+    fun putAll(entries: Sequence<Pair<String, T>>) {
         synchronized(depthUpdateLock) {
-            var current = root
-
-            for (i in inputString.indices) {
-                val reachedEndOfInput = i == inputString.length - 1
-                val currentCharacter = inputString[i].toString()
-
-                when (val nextMatchingNode = current.getNextNode(currentCharacter)) {
-                    null -> {
-                        // we do not have a string going this far, so we create a new node,
-                        // and then keep appending the remaining characters of the input to it
-                        val valueToInsert = if (reachedEndOfInput) value else null
-                        val depth = inputString.length - i - 1
-                        val nextNode = TrieNode(
-                            currentCharacter, valueToInsert, depth, mutableSetOf(), previous = current)
-                        current.addNextNode(nextNode)
-                        current = nextNode
-                    }
-                    else -> {
-                        // we are at the last character of the input
-                        // we have a string going this far, so we modify it, setting it to complete
-                        // (if its already complete, that means we have already inserted the same input before)
-                        // see TrieBasicTest.testAddShorterAfter
-                        if (reachedEndOfInput) {
-                            previousValue = nextMatchingNode.value
-                            nextMatchingNode.value = value
-
-                        // there is a matching node, but we're not at the end of the input yet,
-                        // so go on to the next character
-                        } else {
-                            current = nextMatchingNode
-                        }
-                    }
-                }
-            }
-
-            updateDepths(current, current.next.maxByOrNull { it.depth })
-
-            if (previousValue == null) { // = is update
-                _size++
+            entries.forEach { (inputString, value) ->
+                insert(inputString, value)
             }
         }
+    }
 
-        return previousValue
+    fun putAll(entries: Map<String, T>) {
+        putAll(entries.entries.asSequence().map { it.toPair() })
     }
 
     /**
@@ -102,44 +82,44 @@ class Trie<T>: Iterable<TrieEntry<T>> {
      */
     fun remove(inputString: String): T? {
         synchronized(depthUpdateLock) {
-            var nodeToRemove = root
+            val nodeToRemove = prefixMatchUpTo(inputString) { node, index ->
+                if (node.completesAt(index)) node else null
+            } ?: return null
 
-            for (element in inputString) {
-                val currentCharacter = element.toString()
-                when (val nextMatchingNode = nodeToRemove.getNextNode(currentCharacter)) {
-                    null -> return null
-                    else -> nodeToRemove = nextMatchingNode
-                }
-            }
+            val previousValue = nodeToRemove.value
+            nodeToRemove.value = null
 
-            if (nodeToRemove.completes()) {
+            if (nodeToRemove.next.isEmpty()) {
                 // look back until we find the first node that is used for other strings
                 // (nodes that are not used for other strings can be fully removed)
-                var j = inputString.length
-                var last = nodeToRemove
-                do {
+                var nodeToUnlink = nodeToRemove
+                var last = nodeToRemove.previous!!
+                while (!last.isUsedForOtherStrings()) {
+                    nodeToUnlink = last
                     last = last.previous!!
-                    j--
-                } while (!last.isUsedForOtherStrings())
+                }
 
-                // remove the character from node.next, thus completing the removal
-                val charToUnlink = inputString[j].toString()
-                last.removeNextNode(charToUnlink)
+                // remove the node from last.next, thus completing the removal
+                last.removeNextNode(nodeToUnlink.char)
 
                 // update depths to reflect the change
-                updateDepths(last, last.next.maxByOrNull { it.depth })
+                decreaseDepths(mergeWithSingleChild(last))
 
-                _size--
-
-                return nodeToRemove.value
+            } else {
+                // the node is still used by longer strings, so it stays, but without a value
+                mergeWithSingleChild(nodeToRemove)
             }
-        }
 
-        return null
+            _size--
+
+            return previousValue
+        }
     }
 
     fun getExactly(string: String): T? {
-        return prefixMatchUpTo(string)?.value
+        return prefixMatchUpTo(string) { node, index ->
+            if (node.completesAt(index)) node.value else null
+        }
     }
 
     fun containsExactly(string: String): Boolean {
@@ -147,37 +127,187 @@ class Trie<T>: Iterable<TrieEntry<T>> {
     }
 
     fun matchByPrefix(prefix: String): Map<String, T> {
-        return prefixMatchUpTo(prefix)
-            ?.let { gatherAll(it, prefix) }
-            ?: mutableMapOf()
+        return prefixMatchUpTo(prefix) { node, index ->
+            when (index) {
+                node.length() - 1 ->
+                    gatherAll(node.next, prefix)
+                // the prefix ends in the middle of the label (only in a compressed trie),
+                // so the string of the node itself is longer than the prefix
+                else ->
+                    gatherAll(listOf(node), prefix.substring(0, prefix.length - index - 1))
+            }
+        } ?: mutableMapOf()
+    }
+
+    /**
+     * Returns the strings that start with the prefix, allowing for up to `errorTolerance` insertions, deletions
+     * or substitutions, case-insensitively; closest first (fewest errors, then alphabetically).
+     *
+     * The prefix and error tolerance are compiled into a Levenshtein automaton, which is cached, so repeating
+     * a search (as type-ahead does) does not compile it again. Branches of the Trie are dropped as soon as
+     * the automaton has no state to go to, and once a branch cannot get any closer, all of it is gathered.
+     *
+     * Throws IllegalArgumentException for prefixes longer than 32 characters, or error tolerances above 3,
+     * whose automata would take too long to compile and too much memory to cache.
+     */
+    fun matchByPrefixFuzzy(prefix: String, errorTolerance: Int): Map<String, T> {
+        return LevenshteinAutomaton.compile(prefix, errorTolerance).matchPrefixes(root)
     }
 
     fun matchBySubstring(search: String): List<TrieSearchResult<T>> {
         return matchBySubstringFuzzy(search, 0, FuzzyMatchingStrategy.LIBERAL)
     }
 
+    /**
+     * Returns the results best match first. With a `limit`, returns only that many of the best results,
+     * which is faster than taking them from all the results, since the search skips the branches of the Trie
+     * that can no longer produce any result good enough to make it into them.
+     */
+    @JvmOverloads
     fun matchBySubstringFuzzy(
         search: String,
         errorTolerance: Int,
-        matchingStrategy: FuzzyMatchingStrategy
+        matchingStrategy: FuzzyMatchingStrategy,
+        limit: Int = Int.MAX_VALUE
     ): List<TrieSearchResult<T>> = runBlocking {
-        FuzzySearcher.search(root, search, errorTolerance, matchingStrategy)
+        FuzzySearcher.search(root, search, errorTolerance, matchingStrategy, limit)
+    }
+
+    /**
+     * Same as above, but stops once the search has run out of its budget, of time or of states visited,
+     * returning the best results found so far, flagged as truncated. This bounds the cost of searches that
+     * would explore most of a large Trie, such as short keywords with errors, for their callers' threads
+     * as well as for the threads shared by all searches.
+     */
+    fun matchBySubstringFuzzy(
+        search: String,
+        errorTolerance: Int,
+        matchingStrategy: FuzzyMatchingStrategy,
+        limit: Int,
+        budget: SearchBudget
+    ): TrieSearchResults<T> = runBlocking {
+        FuzzySearcher.searchWithin(root, search, errorTolerance, matchingStrategy, limit, budget)
+    }
+
+    /**
+     * Same as above, but suspends instead of blocking the calling thread, while the search runs
+     * on `Dispatchers.Default`; cancelling the caller stops the search.
+     */
+    suspend fun matchBySubstringFuzzySuspending(
+        search: String,
+        errorTolerance: Int,
+        matchingStrategy: FuzzyMatchingStrategy,
+        limit: Int = Int.MAX_VALUE,
+        budget: SearchBudget = SearchBudget.UNLIMITED
+    ): TrieSearchResults<T> {
+        return FuzzySearcher.searchWithin(root, search, errorTolerance, matchingStrategy, limit, budget)
+    }
+
+    /**
+     * Same as above, for Java: returns at once, with a future completed by the search on `Dispatchers.Default`,
+     * so the calling thread is free to serve other requests meanwhile; cancelling the future stops the search.
+     */
+    @JvmOverloads
+    fun matchBySubstringFuzzyAsync(
+        search: String,
+        errorTolerance: Int,
+        matchingStrategy: FuzzyMatchingStrategy,
+        limit: Int = Int.MAX_VALUE,
+        budget: SearchBudget = SearchBudget.UNLIMITED
+    ): CompletableFuture<TrieSearchResults<T>> = asyncSearchScope.future {
+        matchBySubstringFuzzySuspending(search, errorTolerance, matchingStrategy, limit, budget)
+    }
+
+    /**
+     * Adds the string, and returns the previous value, if any, associated with it.
+     * Must be called holding the lock.
+     */
+    private fun insert(inputString: String, value: T): T? {
+        if (inputString.isEmpty()) {
+            throw IllegalArgumentException("Cannot add an empty string")
+        }
+
+        var previousValue: T? = null
+
+        var current = root
+        var i = 0
+
+        while (i < inputString.length) {
+            val nextMatchingNode = current.getNextNode(inputString[i])
+
+            // we do not have a string going this far, so we create new nodes
+            // holding the remaining characters of the input, and continue from the first of them
+            if (nextMatchingNode == null) {
+                current = appendNewNodes(current, inputString, i, value)
+                break
+            }
+
+            // follow the label of the matching node for as long as it matches the input
+            // (in an uncompressed trie, the label is always a single character)
+            var matched = 1
+            while (matched < nextMatchingNode.length()
+                && i + matched < inputString.length
+                && nextMatchingNode.charAt(matched) == inputString[i + matched]) {
+                matched++
+            }
+
+            i += matched
+
+            current = if (matched < nextMatchingNode.length()) {
+                // the input ends or diverges in the middle of the label, so we split it in two;
+                // if the input diverges, new nodes will be appended to the first half
+                splitNode(nextMatchingNode, matched)
+            } else {
+                nextMatchingNode
+            }
+
+            // we are at the last character of the input
+            // we have a string going this far, so we modify it, setting it to complete
+            // (if its already complete, that means we have already inserted the same input before)
+            // see TrieBasicTest.testAddShorterAfter
+            if (i == inputString.length) {
+                previousValue = current.value
+                current.value = value
+            }
+        }
+
+        increaseDepths(current)
+
+        if (previousValue == null) { // = is update
+            _size++
+        }
+
+        return previousValue
     }
 
-    private fun prefixMatchUpTo(string: String): TrieNode<T>? {
+    /**
+     * Follows the string down from the root, and returns the result of `onMatch`
+     * with the node where the string ends and the index of its last character in the label;
+     * or null if no string in the Trie starts with it
+     */
+    private inline fun <R> prefixMatchUpTo(string: String, onMatch: (TrieNode<T>, Int) -> R?): R? {
         var current = root
-        for (letter in string) {
-            val currentCharacter = letter.toString()
-            when (val nextNode = current.getNextNode(currentCharacter)) {
-                null -> return null
-                else -> current = nextNode
+        var index = current.length() - 1
+
+        for (currentCharacter in string) {
+            val reachedEndOfLabel = index == current.length() - 1
+            when {
+                reachedEndOfLabel -> {
+                    current = current.getNextNode(currentCharacter) ?: return null
+                    index = 0
+                }
+                current.charAt(index + 1) == currentCharacter ->
+                    index++
+                else ->
+                    return null
             }
         }
-        return current
+
+        return onMatch(current, index)
     }
 
-    private fun gatherAll(start: TrieNode<T>, startSequence: String): MutableMap<String, T> {
-        return start.next
+    private fun gatherAll(start: Iterable<TrieNode<T>>, startSequence: String): MutableMap<String, T> {
+        return start
             .flatMap {
                 TrieIterator(it).asSequence()
             }
@@ -187,15 +317,139 @@ class Trie<T>: Iterable<TrieEntry<T>> {
             }
     }
 
-    private fun updateDepths(current: TrieNode<T>?, next: TrieNode<T>?) {
-        current?.let {
-            val maxDepth = current.next.filter { it != next }.maxOfOrNull { it.depth } ?: 0
-            current.depth = max(next?.depth ?: 0, maxDepth) + current.string.length
-            updateDepths(current.previous, current)
+    /**
+     * Appends the characters of the input from startIndex onwards under the node:
+     * as a single node in a compressed trie, or one node per character otherwise.
+     * The last node appended receives the value. Returns the first node appended.
+     */
+    private fun appendNewNodes(node: TrieNode<T>, inputString: String, startIndex: Int, value: T): TrieNode<T> {
+        if (compressed) {
+            val tail = if (startIndex < inputString.length - 1) {
+                inputString.toCharArray(startIndex + 1, inputString.length)
+            } else {
+                null
+            }
+            val newNode = TrieNode(
+                inputString[startIndex], tail, value, inputString.length - startIndex, TrieNodeChildren(), node)
+            node.addNextNode(newNode)
+            return newNode
+        }
+
+        var current = node
+        for (i in startIndex until inputString.length) {
+            val valueToInsert = if (i == inputString.length - 1) value else null
+            val depth = inputString.length - i
+            val newNode = TrieNode(inputString[i], null, valueToInsert, depth, TrieNodeChildren(), current)
+            current.addNextNode(newNode)
+            current = newNode
+        }
+        return node.getNextNode(inputString[startIndex])!!
+    }
+
+    /**
+     * Splits a node of a compressed trie in two, at the given index of its label:
+     * the first half replaces the node, and the second half, holding the node's value and children,
+     * becomes the only child of the first half. Returns the first half.
+     */
+    private fun splitNode(node: TrieNode<T>, index: Int): TrieNode<T> {
+        val label = node.label()
+
+        val firstHalf = TrieNode(
+            label[0],
+            label.tailToCharArray(1, index),
+            null,
+            node.depth,
+            TrieNodeChildren(),
+            node.previous)
+
+        val secondHalf = TrieNode(
+            label[index],
+            label.tailToCharArray(index + 1, label.length),
+            node.value,
+            node.depth - index,
+            node.next,
+            firstHalf)
+
+        secondHalf.next.forEach { it.previous = secondHalf }
+        firstHalf.addNextNode(secondHalf)
+        node.previous!!.addNextNode(firstHalf)
+
+        return firstHalf
+    }
+
+    /**
+     * In a compressed trie, merges a node that does not complete a string with its only child, if any,
+     * so that chains of nodes with a single child never form. Returns the node that ends up in its place.
+     */
+    private fun mergeWithSingleChild(node: TrieNode<T>): TrieNode<T> {
+        if (!compressed || node.isRoot() || node.completes() || node.next.size != 1) {
+            return node
+        }
+
+        val child = node.next.first()
+        val label = node.label() + child.label()
+
+        val merged = TrieNode(
+            label[0],
+            label.tailToCharArray(1, label.length),
+            child.value,
+            node.depth,
+            child.next,
+            node.previous)
+
+        merged.next.forEach { it.previous = merged }
+        node.previous!!.addNextNode(merged)
+
+        return merged
+    }
+
+    private fun String.tailToCharArray(startIndex: Int, endIndex: Int): CharArray? {
+        return if (startIndex < endIndex) this.toCharArray(startIndex, endIndex) else null
+    }
+
+    /**
+     * After the node is added or given a value, raises the depths of its ancestors to fit its own depth.
+     * Depths can only grow when adding, so we stop at the first ancestor that is already deep enough.
+     */
+    private fun increaseDepths(node: TrieNode<T>) {
+        var child = node
+        var current = node.previous
+
+        while (current != null) {
+            val depth = child.depth + current.length()
+            if (depth <= current.depth) {
+                return
+            }
+            current.depth = depth
+            child = current
+            current = current.previous
+        }
+    }
+
+    /**
+     * After a branch is removed from the node, recomputes its depth and its ancestors' from their children.
+     * We stop at the first node whose depth does not change, since the ones above it do not change either.
+     */
+    private fun decreaseDepths(node: TrieNode<T>) {
+        var current: TrieNode<T>? = node
+
+        while (current != null) {
+            val depth = current.next.maxDepth() + current.length()
+            if (depth == current.depth) {
+                return
+            }
+            current.depth = depth
+            current = current.previous
         }
     }
 
     private fun TrieNode<T>.isUsedForOtherStrings(): Boolean {
         return this === root || this.completes() || this.next.size > 1
     }
-}
\ No newline at end of file
+
+    private companion object {
+
+        // searches are independent of each other: one failing does not cancel the others
+        val asyncSearchScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    }
+}
@@ -6,7 +6,7 @@ class TrieIterator<T>(root: TrieNode<T>): Iterator<TrieEntry<T>> {
     private var next: TrieEntry<T>? = null
 
     init {
-        queue.add(Pair(root, root.string))
+        queue.add(Pair(root, root.label()))
         setNext()
     }
 
@@ -25,10 +25,12 @@ class TrieIterator<T>(root: TrieNode<T>): Iterator<TrieEntry<T>> {
         while(queue.isNotEmpty()) {
             val (node, sequence) = queue.removeFirst()
             for (next in node.next) {
-                queue.add(Pair(next, sequence + next.string))
+                queue.add(Pair(next, sequence + next.label()))
             }
-            if (node.completes()) {
-                next = TrieEntry(sequence, node.value!!)
+            // a concurrent remove can clear the value at any time, so it is only read once
+            val value = node.value
+            if (value != null) {
+                next = TrieEntry(sequence, value)
                 return
             }
         }
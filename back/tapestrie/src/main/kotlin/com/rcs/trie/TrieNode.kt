@@ -1,36 +1,85 @@
 package com.rcs.trie
 
+/**
+ * A node holds the label of the edge leading to it: its first character, plus the remaining
+ * characters (the tail) in a compressed Trie, where chains of single-child nodes are merged into one.
+ * In an uncompressed Trie the tail is always null, and every node holds exactly one character.
+ */
 class TrieNode<T>(
-    val string: String,
-    var value: T?,
-    var depth: Int,
-    val next: MutableSet<TrieNode<T>>,
-    val previous: TrieNode<T>?
+    val char: Char,
+    val tail: CharArray?,
+    @Volatile var value: T?,
+    @Volatile var depth: Int,
+    val next: TrieNodeChildren<T>,
+    @Volatile var previous: TrieNode<T>?
 ) {
 
     fun isRoot(): Boolean {
-        return string == "" && previous == null
+        return previous == null
     }
 
     fun completes(): Boolean {
         return value != null
     }
 
-    fun getNextNode(string: String): TrieNode<T>? {
-        synchronized(next) {
-            return next.firstOrNull { it.string == string }
-        }
+    /**
+     * Whether a string ends at this index of the label
+     */
+    fun completesAt(index: Int): Boolean {
+        return index == length() - 1 && completes()
+    }
+
+    fun getNextNode(char: Char): TrieNode<T>? {
+        return next.get(char)
     }
 
     fun addNextNode(node: TrieNode<T>) {
-        synchronized(next) {
-            next.add(node)
+        next.add(node)
+    }
+
+    fun removeNextNode(char: Char) {
+        next.remove(char)
+    }
+
+    /**
+     * The number of characters in the label: zero for the root
+     */
+    fun length(): Int {
+        return when {
+            isRoot() -> 0
+            tail == null -> 1
+            else -> tail.size + 1
+        }
+    }
+
+    fun charAt(index: Int): Char {
+        return if (index == 0) char else tail!![index - 1]
+    }
+
+    /**
+     * The max size of a string stemming from this index of the label, counting the character at the index
+     */
+    fun depthAt(index: Int): Int {
+        return depth - index
+    }
+
+    fun label(): String {
+        return when {
+            isRoot() -> ""
+            tail == null -> char.toString()
+            else -> char + String(tail)
         }
     }
 
-    fun removeNextNode(string: String) {
-        synchronized(next) {
-            next.removeIf { it.string == string }
+    companion object {
+
+        /**
+         * The root does not hold a character; this is only a placeholder
+         */
+        const val ROOT_CHAR = '\u0000'
+
+        fun <T> root(): TrieNode<T> {
+            return TrieNode(ROOT_CHAR, null, null, 0, TrieNodeChildren(), null)
         }
     }
 }
\ No newline at end of file
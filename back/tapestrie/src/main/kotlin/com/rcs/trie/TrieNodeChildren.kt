@@ -0,0 +1,135 @@
+package com.rcs.trie
+
+/**
+ * The child nodes of a TrieNode, indexed by their character.
+ *
+ * Children are kept in a char array sorted in ascending order, with their nodes in a parallel array,
+ * so a child is found by binary search in O(log n) without allocating or comparing Strings.
+ *
+ * The arrays are never modified once published: adding or removing a child copies them (copy-on-write),
+ * so readers never lock, and always see a consistent set of children, even while a writer modifies it.
+ * Writers are serialized among themselves. Nodes without children share the same empty arrays.
+ */
+class TrieNodeChildren<T>: Iterable<TrieNode<T>> {
+
+    private class Snapshot<T>(val keys: CharArray, val nodes: Array<TrieNode<T>>)
+
+    @Suppress("UNCHECKED_CAST")
+    @Volatile
+    private var snapshot: Snapshot<T> = EMPTY as Snapshot<T>
+
+    val size: Int
+        get() = snapshot.keys.size
+
+    fun isEmpty(): Boolean {
+        return size == 0
+    }
+
+    fun get(char: Char): TrieNode<T>? {
+        val current = snapshot
+        val index = current.keys.indexOfKey(char)
+        return if (index >= 0) current.nodes[index] else null
+    }
+
+    /**
+     * The greatest depth among the children, or 0 if there are none
+     */
+    fun maxDepth(): Int {
+        var maxDepth = 0
+        for (node in snapshot.nodes) {
+            if (node.depth > maxDepth) {
+                maxDepth = node.depth
+            }
+        }
+        return maxDepth
+    }
+
+    fun add(node: TrieNode<T>) {
+        val char = node.char
+
+        synchronized(this) {
+            val current = snapshot
+            val index = current.keys.indexOfKey(char)
+
+            // replaces an existing child with the same character
+            if (index >= 0) {
+                val nodes = current.nodes.copyOf()
+                nodes[index] = node
+                snapshot = Snapshot(current.keys, nodes)
+                return
+            }
+
+            val insertionIndex = -(index + 1)
+            val size = current.keys.size
+
+            val keys = CharArray(size + 1)
+            System.arraycopy(current.keys, 0, keys, 0, insertionIndex)
+            System.arraycopy(current.keys, insertionIndex, keys, insertionIndex + 1, size - insertionIndex)
+            keys[insertionIndex] = char
+
+            val nodes = current.nodes.copyOf(size + 1)
+            System.arraycopy(current.nodes, insertionIndex, nodes, insertionIndex + 1, size - insertionIndex)
+            nodes[insertionIndex] = node
+
+            @Suppress("UNCHECKED_CAST")
+            snapshot = Snapshot(keys, nodes as Array<TrieNode<T>>)
+        }
+    }
+
+    fun remove(char: Char): TrieNode<T>? {
+        synchronized(this) {
+            val current = snapshot
+            val index = current.keys.indexOfKey(char)
+            if (index < 0) {
+                return null
+            }
+
+            val size = current.keys.size
+
+            val keys = CharArray(size - 1)
+            System.arraycopy(current.keys, 0, keys, 0, index)
+            System.arraycopy(current.keys, index + 1, keys, index, size - index - 1)
+
+            val nodes = current.nodes.copyOf(size - 1)
+            System.arraycopy(current.nodes, index + 1, nodes, index, size - index - 1)
+
+            @Suppress("UNCHECKED_CAST")
+            snapshot = Snapshot(keys, nodes as Array<TrieNode<T>>)
+
+            return current.nodes[index]
+        }
+    }
+
+    /**
+     * Iterates over the children as they were at the time of the call,
+     * so nodes can be added or removed concurrently without affecting the iteration.
+     */
+    override fun iterator(): Iterator<TrieNode<T>> {
+        return snapshot.nodes.iterator()
+    }
+
+    /**
+     * Returns the index of the char, or `-(insertion point) - 1` if it's not present,
+     * following the contract of java.util.Arrays.binarySearch
+     */
+    private fun CharArray.indexOfKey(char: Char): Int {
+        var low = 0
+        var high = this.size - 1
+
+        while (low <= high) {
+            val middle = (low + high) ushr 1
+            val middleKey = this[middle]
+            when {
+                middleKey < char -> low = middle + 1
+                middleKey > char -> high = middle - 1
+                else -> return middle
+            }
+        }
+
+        return -(low + 1)
+    }
+
+    companion object {
+        private val EMPTY = Snapshot<Any?>(CharArray(0), arrayOf())
+    }
+}
@@ -25,6 +25,7 @@ class TrieSearchResultComparator {
         private val byNumberOfErrorsLessFirst: Comparator<TrieSearchResult<*>> =
             compareBy { it.numberOfErrors }
 
+        // if this changes, isBetterThanAnyResultWith must change accordingly
         val byBestMatchFirst: Comparator<TrieSearchResult<*>> =
             byPrefixDistanceShortestFirst
                 .thenComparing(byNumberOfMatchesMoreFirst)
@@ -33,5 +34,26 @@ class TrieSearchResultComparator {
                 .thenComparing(byMatchedWholeWordTrueFirst)
                 .thenComparing(byLengthOfStringShortestFirst)
                 .thenComparing(byNumberOfErrorsLessFirst)
+
+        /**
+         * Whether the result is better, by `byBestMatchFirst`, than any result with at most `maximumNumberOfMatches`
+         * in a string of at least `minimumStringLength` characters could be. The best such result would have
+         * all of its matches in a whole word of that many characters, at its start, and without errors.
+         */
+        fun isBetterThanAnyResultWith(
+            result: TrieSearchResult<*>,
+            maximumNumberOfMatches: Int,
+            minimumStringLength: Int
+        ): Boolean {
+            // compares criterion by criterion, in the same order as byBestMatchFirst
+            // (the matched word is never shorter than the number of matches)
+            return when {
+                result.prefixDistance != 0 -> false
+                result.numberOfMatches != maximumNumberOfMatches -> result.numberOfMatches > maximumNumberOfMatches
+                result.matchedWord.length != maximumNumberOfMatches -> result.matchedWord.length < maximumNumberOfMatches
+                !result.matchedWholeWord -> false
+                else -> result.string.length < minimumStringLength
+            }
+        }
     }
 }
\ No newline at end of file
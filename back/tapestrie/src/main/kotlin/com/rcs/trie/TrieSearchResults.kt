@@ -0,0 +1,10 @@
+package com.rcs.trie
+
+data class TrieSearchResults<T>(
+    // best match first
+    val results: List<TrieSearchResult<T>>,
+
+    // whether the search ran out of its budget, so that some results may be missing,
+    // or better results may have been found
+    val truncated: Boolean
+)
@@ -0,0 +1,143 @@
+package com.rcs.trie
+
+import com.rcs.trie.FuzzyMatchingStrategy.*
+import kotlinx.coroutines.runBlocking
+import org.assertj.core.api.Assertions.assertThat
+import java.util.concurrent.Executors
+import kotlin.random.Random
+import kotlin.test.Test
+
+class BitParallelFilterTest {
+
+    private val random = Random(42)
+
+    @Test
+    fun testSameResultsWithAndWithoutFilter() {
+        listOf(false, true).forEach { compressed ->
+            // Arrange
+            val trie = Trie<Int>(compressed)
+            val strings = (1..100).map { randomString(random.nextInt(1, 16)) }
+            strings.forEachIndexed { i, it -> trie.put(it, i) }
+
+            val keywords = (1..20).map { randomKeyword(strings) }
+
+            keywords.forEach { keyword ->
+                // FUZZY_PREFIX searches branch out too much beyond a single error to be run this many times
+                mapOf(LIBERAL to 3, FUZZY_PREFIX to 1).forEach { (matchingStrategy, maxErrorTolerance) ->
+                    (0..minOf(maxErrorTolerance, keyword.length - 1)).forEach { errorTolerance ->
+                        // Act
+                        val withFilter = trie.matchBySubstringFuzzy(keyword, errorTolerance, matchingStrategy)
+                        val withoutFilter = runBlocking {
+                            FuzzySearcher.search(trie.root, keyword, errorTolerance, matchingStrategy,
+                                Int.MAX_VALUE, useBitParallelFilter = false)
+                        }
+
+                        // Assert
+                        assertThat(withFilter)
+                            .describedAs("compressed = $compressed, keyword = $keyword, " +
+                                    "errorTolerance = $errorTolerance, matchingStrategy = $matchingStrategy")
+                            .isEqualTo(withoutFilter)
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    fun testNextColumnIsNullOnlyWhereNoMatchCanFollow() {
+        // Arrange
+        val filter = BitParallelFilter.forSearch("abcd", 1, LIBERAL, true)!!
+        val root = filter.initialColumn()
+
+        // Act
+        val a = filter.next(root, 'a', 3)
+        val ab = filter.next(a!!, 'b', 2)
+        val abc = filter.next(ab!!, 'c', 1)
+        val x = filter.next(root, 'x', 3)
+        val xy = filter.next(x!!, 'y', 1)
+        val xyz = filter.next(filter.next(x, 'y', 3)!!, 'z', 1)
+
+        // Assert
+        // "abc" is 1 edit away from "abcd": everything beneath it matches
+        assertThat(abc).isNotNull()
+        assertThat(filter.next(abc!!, 'z', 0)).isSameAs(abc)
+        // "xy" followed by at most 1 character cannot contain "abcd" with a single error,
+        // but followed by 3 it can: "xyabc", "xybcd"...
+        assertThat(xy).isNull()
+        assertThat(filter.next(x, 'y', 3)).isNotNull()
+        // "xyz" followed by a single character cannot either
+        assertThat(xyz).isNull()
+    }
+
+    @Test
+    fun testSameResultsWithAndWithoutFilterDuringWrites() {
+        // Arrange
+        val trie = Trie<Int>(true)
+        val reference = Trie<Int>(true)
+        val stableStrings = (0..500).map { "stable $it" }
+        val changingStrings = (0..500).map { "stable $it changing" } + (0..500).map { "stab$it" }
+        stableStrings.forEachIndexed { i, it ->
+            trie.put(it, i)
+            reference.put(it, i)
+        }
+        val keywords = listOf("stable 12", "stabel 3", "tabl", "able 49", "stable 5")
+        val executorService = Executors.newFixedThreadPool(4)
+
+        // Act
+        // writers keep adding and removing strings that share their prefixes with the stable ones,
+        // which splits and merges nodes in a compressed trie
+        val writeFutures = changingStrings.map {
+            executorService.submit {
+                trie.put(it, -1)
+                trie.remove(it)
+            }
+        }
+        val searchFutures = (1..20).flatMap { keywords }.map { keyword ->
+            executorService.submit<Pair<String, List<String>>> {
+                keyword to trie.matchBySubstringFuzzy(keyword, 1, LIBERAL).map { it.string }
+            }
+        }
+        writeFutures.forEach { it.get() }
+        val results = searchFutures.map { it.get() }
+        executorService.shutdown()
+
+        // Assert
+        results.forEach { (keyword, strings) ->
+            val expected = runBlocking {
+                FuzzySearcher.search(reference.root, keyword, 1, LIBERAL, Int.MAX_VALUE, useBitParallelFilter = false)
+            }.map { it.string }
+            assertThat(strings)
+                .describedAs("keyword = $keyword")
+                .containsAll(expected)
+        }
+    }
+
+    @Test
+    fun testDoesNotApplyToOtherStrategiesOrLongKeywords() {
+        // Act & Assert
+        assertThat(BitParallelFilter.forSearch("abcd", 1, ACRONYM, true)).isNull()
+        assertThat(BitParallelFilter.forSearch("ab*d", 1, WILDCARD, true)).isNull()
+        assertThat(BitParallelFilter.forSearch("a".repeat(65), 1, LIBERAL, true)).isNull()
+        assertThat(BitParallelFilter.forSearch("ab", 2, LIBERAL, true)).isNull()
+        assertThat(BitParallelFilter.forSearch("a".repeat(64), 1, FUZZY_PREFIX, true)).isNotNull()
+    }
+
+    private fun randomString(length: Int): String {
+        val alphabet = "abcdefghijABC -.éÉ"
+        return (1..length).map { alphabet[random.nextInt(alphabet.length)] }.joinToString("")
+    }
+
+    /**
+     * A piece of one of the strings, at least 3 characters long, possibly with a typo, so that there are some matches
+     */
+    private fun randomKeyword(strings: List<String>): String {
+        val string = strings.filter { it.length >= 3 }.random(random)
+        val start = random.nextInt(string.length - 2)
+        val end = random.nextInt(start + 3, string.length + 1)
+        val keyword = string.substring(start, end).toCharArray()
+        if (random.nextBoolean()) {
+            keyword[random.nextInt(keyword.size)] = 'x'
+        }
+        return String(keyword)
+    }
+}
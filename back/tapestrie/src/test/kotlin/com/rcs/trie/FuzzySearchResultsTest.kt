@@ -0,0 +1,120 @@
+package com.rcs.trie
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import kotlin.test.Test
+
+class FuzzySearchResultsTest {
+
+    @Test
+    fun testKeepsBestResultForEachString() {
+        // Arrange
+        val results = FuzzySearchResults<Int>()
+        val worse = result("computer", numberOfErrors = 1)
+        val better = result("computer", numberOfErrors = 0)
+        val other = result("compute", numberOfMatches = 6, numberOfErrors = 1)
+
+        // Act
+        results.add(worse)
+        results.add(other)
+        results.add(better)
+        results.add(worse)
+
+        // Assert
+        assertThat(results.toList()).containsExactly(better, other)
+    }
+
+    @Test
+    fun testKeepsOnlyBestResultsUpToLimit() {
+        // Arrange
+        val results = FuzzySearchResults<Int>(limit = 2)
+        val best = result("computer", prefixDistance = 0)
+        val second = result("minicomputer", prefixDistance = 4)
+        val third = result("deepcomputing", prefixDistance = 4, numberOfMatches = 6)
+
+        // Act
+        results.add(third)
+        results.add(second)
+        results.add(best)
+        results.add(third)
+
+        // Assert
+        assertThat(results.toList()).containsExactly(best, second)
+    }
+
+    @Test
+    fun testBreaksTiesByString() {
+        // Arrange
+        val results = FuzzySearchResults<Int>(limit = 2)
+        val a = result("abc")
+        val b = result("abd")
+        val c = result("abe")
+
+        // Act
+        results.add(c)
+        results.add(b)
+        results.add(a)
+
+        // Assert
+        assertThat(results.toList()).containsExactly(a, b)
+    }
+
+    @Test
+    fun testAddAllMergesKeepingBestResults() {
+        // Arrange
+        val results = FuzzySearchResults<Int>(limit = 2)
+        val other = FuzzySearchResults<Int>(limit = 2)
+        val best = result("computer", prefixDistance = 0)
+        val worse = result("computer", prefixDistance = 1)
+        val second = result("minicomputer", prefixDistance = 4)
+        val third = result("deepcomputing", prefixDistance = 4, numberOfMatches = 6)
+        results.add(worse)
+        results.add(third)
+        other.add(best)
+        other.add(second)
+
+        // Act
+        results.addAll(other)
+
+        // Assert
+        assertThat(results.toList()).containsExactly(best, second)
+    }
+
+    @Test
+    fun testWorstWhenFull() {
+        // Arrange
+        val results = FuzzySearchResults<Int>(limit = 2)
+        val best = result("computer", prefixDistance = 0)
+        val second = result("minicomputer", prefixDistance = 4)
+
+        // Act
+        val wasAdded = results.add(second)
+        val worstBeforeFull = results.worstWhenFull()
+        results.add(best)
+        val worstWhenFull = results.worstWhenFull()
+        val wasAddedAgain = results.add(second)
+
+        // Assert
+        assertThat(wasAdded).isTrue()
+        assertThat(worstBeforeFull).isNull()
+        assertThat(worstWhenFull).isEqualTo(second)
+        assertThat(wasAddedAgain).isFalse()
+    }
+
+    @Test
+    fun testLimitMustBePositive() {
+        // Act & Assert
+        assertThatThrownBy { FuzzySearchResults<Int>(limit = 0) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+    }
+
+    private fun result(
+        string: String,
+        numberOfMatches: Int = 7,
+        numberOfErrors: Int = 0,
+        prefixDistance: Int = 0
+    ): TrieSearchResult<Int> {
+        return TrieSearchResult(
+            string, 1, string, string, numberOfMatches, numberOfErrors, prefixDistance, false, false)
+    }
+}
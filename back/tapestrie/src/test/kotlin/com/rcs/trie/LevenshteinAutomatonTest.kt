@@ -0,0 +1,100 @@
+package com.rcs.trie
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import kotlin.random.Random
+import kotlin.test.Test
+
+class LevenshteinAutomatonTest {
+
+    @Test
+    fun testDistancesSameAsEditDistance() {
+        // Arrange
+        val random = Random(42)
+        val alphabet = "abcdAB"
+
+        repeat(200) {
+            val keyword = (1..random.nextInt(1, 8)).map { alphabet[random.nextInt(alphabet.length)] }.joinToString("")
+            val string = (1..random.nextInt(0, 10)).map { alphabet[random.nextInt(alphabet.length)] }.joinToString("")
+            val errorTolerance = random.nextInt(0, 3)
+            val automaton = LevenshteinAutomaton.compile(keyword, errorTolerance)
+
+            // Act
+            var state = LevenshteinAutomaton.INITIAL
+            for (char in string) {
+                state = automaton.step(state, char)
+                if (state == LevenshteinAutomaton.DEAD) {
+                    break
+                }
+            }
+
+            // Assert
+            val expectedDistance = editDistance(keyword.lowercase(), string.lowercase())
+            if (expectedDistance <= errorTolerance) {
+                assertThat(state)
+                    .describedAs("keyword = $keyword, string = $string")
+                    .isNotEqualTo(LevenshteinAutomaton.DEAD)
+                assertThat(automaton.distance(state))
+                    .describedAs("keyword = $keyword, string = $string")
+                    .isEqualTo(expectedDistance)
+            } else {
+                assertThat(state == LevenshteinAutomaton.DEAD || !automaton.accepts(state))
+                    .describedAs("keyword = $keyword, string = $string")
+                    .isTrue()
+            }
+        }
+    }
+
+    @Test
+    fun testCompiledAutomataAreCached() {
+        // Act
+        val automaton = LevenshteinAutomaton.compile("tech", 1)
+        val sameIgnoringCase = LevenshteinAutomaton.compile("TECH", 1)
+        val otherTolerance = LevenshteinAutomaton.compile("tech", 2)
+
+        // Assert
+        assertThat(sameIgnoringCase).isSameAs(automaton)
+        assertThat(otherTolerance).isNotSameAs(automaton)
+    }
+
+    @Test
+    fun testInvalidArguments() {
+        // Act & Assert
+        assertThatThrownBy { LevenshteinAutomaton.compile("", 1) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { LevenshteinAutomaton.compile("tech", -1) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+    }
+
+    @Test
+    fun testKeywordLengthAndErrorToleranceLimits() {
+        // Arrange
+        val longestKeyword = "a".repeat(LevenshteinAutomaton.MAX_KEYWORD_LENGTH)
+        val trie = Trie<Int>()
+        trie.put("tech", 1)
+
+        // Act & Assert
+        assertThat(LevenshteinAutomaton.compile(longestKeyword, LevenshteinAutomaton.MAX_ERROR_TOLERANCE)).isNotNull()
+        assertThatThrownBy { LevenshteinAutomaton.compile(longestKeyword + "a", 1) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { LevenshteinAutomaton.compile("tech", LevenshteinAutomaton.MAX_ERROR_TOLERANCE + 1) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { trie.matchByPrefixFuzzy("tech", 100) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+        assertThat(trie.matchByPrefixFuzzy("tehc", LevenshteinAutomaton.MAX_ERROR_TOLERANCE)).containsOnlyKeys("tech")
+    }
+
+    private fun editDistance(a: String, b: String): Int {
+        var previous = IntArray(b.length + 1) { it }
+        for (i in 1..a.length) {
+            val current = IntArray(b.length + 1)
+            current[0] = i
+            for (j in 1..b.length) {
+                val substitution = previous[j - 1] + if (a[i - 1] == b[j - 1]) 0 else 1
+                current[j] = minOf(substitution, previous[j] + 1, current[j - 1] + 1)
+            }
+            previous = current
+        }
+        return previous[b.length]
+    }
+}
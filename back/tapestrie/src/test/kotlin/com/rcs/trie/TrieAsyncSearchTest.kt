@@ -0,0 +1,53 @@
+package com.rcs.trie
+
+import com.rcs.trie.FuzzyMatchingStrategy.LIBERAL
+import kotlinx.coroutines.runBlocking
+import org.assertj.core.api.Assertions.assertThat
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertFailsWith
+
+class TrieAsyncSearchTest {
+
+    private val trie = Trie<Int>(true).apply {
+        listOf("apple inc", "pineapple corp", "microsoft corp", "applied materials").forEachIndexed { i, it -> put(it, i) }
+    }
+
+    @Test
+    fun testAsyncSearchFindsSameResults() {
+        // Arrange
+        val expected = trie.matchBySubstringFuzzy("aple", 1, LIBERAL, 3)
+
+        // Act
+        val future = trie.matchBySubstringFuzzyAsync("aple", 1, LIBERAL, 3)
+        val result = future.get(10, TimeUnit.SECONDS)
+
+        // Assert
+        assertThat(result.truncated).isFalse()
+        assertThat(result.results).isEqualTo(expected)
+    }
+
+    @Test
+    fun testSuspendingSearchFindsSameResults() {
+        // Arrange
+        val expected = trie.matchBySubstringFuzzy("corp", 0, LIBERAL)
+
+        // Act
+        val result = runBlocking { trie.matchBySubstringFuzzySuspending("corp", 0, LIBERAL) }
+
+        // Assert
+        assertThat(result.truncated).isFalse()
+        assertThat(result.results).isEqualTo(expected)
+    }
+
+    @Test
+    fun testAsyncSearchCompletesExceptionallyOnInvalidSearch() {
+        // Act
+        val future = trie.matchBySubstringFuzzyAsync("", 0, LIBERAL)
+
+        // Assert
+        val exception = assertFailsWith<ExecutionException> { future.get(10, TimeUnit.SECONDS) }
+        assertThat(exception.cause).isInstanceOf(IllegalArgumentException::class.java)
+    }
+}
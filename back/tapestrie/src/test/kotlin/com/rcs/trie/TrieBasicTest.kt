@@ -131,6 +131,24 @@ class TrieBasicTest {
         assertThat(trie.containsExactly("Hello, World!")).isTrue()
     }
 
+    @Test
+    fun testRemovePrefixOfAnotherString() {
+        // Arrange
+        val trie = Trie<Int>()
+        trie.put("Hello", 1)
+        trie.put("Hello, World!", 2)
+
+        // Act
+        val result = trie.remove("Hello")
+
+        // Assert
+        assertThat(trie.size).isEqualTo(1)
+        assertThat(result).isEqualTo(1)
+        assertThat(trie.containsExactly("Hello")).isFalse()
+        assertThat(trie.containsExactly("Hello, World!")).isTrue()
+        assertThat(trie.depth()).isEqualTo(13)
+    }
+
     @Test
     fun testRemoveNonExistent() {
         // Arrange
@@ -197,4 +215,81 @@ class TrieBasicTest {
         assertThat(removed).isNotNull()
         assertThat(result).isEqualTo(3)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testDepthOnRemoveDeepestOfSeveral() {
+        // Arrange
+        val trie = Trie<Unit>()
+        trie.put("12345", Unit)
+        trie.put("123ab", Unit)
+        trie.put("123abcd", Unit)
+        trie.put("xyz", Unit)
+
+        // Act
+        trie.remove("123abcd")
+        val afterFirstRemove = trie.depth()
+        trie.remove("12345")
+        val afterSecondRemove = trie.depth()
+        trie.remove("123ab")
+        val afterThirdRemove = trie.depth()
+
+        // Assert
+        assertThat(afterFirstRemove).isEqualTo(5)
+        assertThat(afterSecondRemove).isEqualTo(5)
+        assertThat(afterThirdRemove).isEqualTo(3)
+    }
+
+    @Test
+    fun testDepthOnVeryLongString() {
+        // Arrange
+        val trie = Trie<Unit>()
+        val longString = "a".repeat(100_000)
+
+        // Act
+        trie.put(longString, Unit)
+        trie.put(longString.substring(0, 50_000) + "b", Unit)
+        val afterAdd = trie.depth()
+        trie.remove(longString)
+        val afterRemove = trie.depth()
+
+        // Assert
+        assertThat(afterAdd).isEqualTo(100_000)
+        assertThat(afterRemove).isEqualTo(50_001)
+    }
+
+    @Test
+    fun testPutAll() {
+        // Arrange
+        val trie = Trie<Int>()
+        trie.put("Hello", 1)
+        trie.put("Hello, World!", 2)
+
+        // Act
+        trie.putAll(sequenceOf(
+            "Hello, Nomads!" to 3,
+            "Hello" to 4,
+            "Hi" to 5,
+            "Hello, World! Again" to 6))
+
+        // Assert
+        assertThat(trie.size).isEqualTo(5)
+        assertThat(trie.getExactly("Hello")).isEqualTo(4)
+        assertThat(trie.getExactly("Hello, World!")).isEqualTo(2)
+        assertThat(trie.getExactly("Hello, Nomads!")).isEqualTo(3)
+        assertThat(trie.getExactly("Hi")).isEqualTo(5)
+        assertThat(trie.getExactly("Hello, World! Again")).isEqualTo(6)
+        assertThat(trie.depth()).isEqualTo(19)
+    }
+
+    @Test
+    fun testPutAllEmptyString() {
+        // Arrange
+        val trie = Trie<Int>()
+
+        // Act & Assert
+        assertThatThrownBy { trie.putAll(mapOf("Hello" to 1, "" to 2)) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+        assertThat(trie.getExactly("Hello")).isEqualTo(1)
+        assertThat(trie.depth()).isEqualTo(5)
+    }
+}
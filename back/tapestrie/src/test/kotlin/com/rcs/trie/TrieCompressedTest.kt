@@ -0,0 +1,122 @@
+package com.rcs.trie
+
+import com.rcs.trie.FuzzyMatchingStrategy.*
+import org.assertj.core.api.Assertions.assertThat
+import java.util.*
+import kotlin.test.Test
+
+class TrieCompressedTest {
+
+    @Test
+    fun testAddSplitsLabel() {
+        // Arrange
+        val trie = Trie<Int>(compressed = true)
+        trie.put("holdings", 1)
+
+        // Act
+        trie.put("hold", 2)
+        trie.put("hollow", 3)
+
+        // Assert
+        assertThat(trie.size).isEqualTo(3)
+        assertThat(trie.getExactly("holdings")).isEqualTo(1)
+        assertThat(trie.getExactly("hold")).isEqualTo(2)
+        assertThat(trie.getExactly("hollow")).isEqualTo(3)
+        assertThat(trie.getExactly("hol")).isNull()
+        assertThat(trie.getExactly("holdingsx")).isNull()
+        assertThat(trie.depth()).isEqualTo(8)
+    }
+
+    @Test
+    fun testRemoveMergesLabels() {
+        // Arrange
+        val trie = Trie<Int>(compressed = true)
+        trie.put("hold", 1)
+        trie.put("holdings", 2)
+        trie.put("hollow", 3)
+
+        // Act
+        val removedHold = trie.remove("hold")
+        val removedHollow = trie.remove("hollow")
+
+        // Assert
+        assertThat(removedHold).isEqualTo(1)
+        assertThat(removedHollow).isEqualTo(3)
+        assertThat(trie.size).isEqualTo(1)
+        assertThat(trie.getExactly("holdings")).isEqualTo(2)
+        assertThat(trie.matchByPrefix("ho")).isEqualTo(mapOf("holdings" to 2))
+        assertThat(trie.toList()).containsExactly(TrieEntry("holdings", 2))
+    }
+
+    @Test
+    fun testMatchByPrefixEndingInsideLabel() {
+        // Arrange
+        val trie = Trie<Int>(compressed = true)
+        trie.put("technologies", 1)
+        trie.put("technical", 2)
+
+        // Act
+        val result = trie.matchByPrefix("techno")
+
+        // Assert
+        assertThat(result).isEqualTo(mapOf("technologies" to 1))
+    }
+
+    @Test
+    fun testSameResultsAsUncompressed() {
+        // Arrange
+        val random = Random(7)
+        val strings = (0..500).map { randomWords(random) }.toSet()
+        val uncompressed = Trie<String>()
+        val compressed = Trie<String>(compressed = true)
+        strings.forEach {
+            uncompressed.put(it, it)
+            compressed.put(it, it)
+        }
+        strings.filterIndexed { i, _ -> i % 3 == 0 }.forEach {
+            uncompressed.remove(it)
+            compressed.remove(it)
+        }
+
+        // Act & Assert
+        assertThat(compressed.size).isEqualTo(uncompressed.size)
+        assertThat(compressed.depth()).isEqualTo(uncompressed.depth())
+        assertThat(compressed.toSet()).isEqualTo(uncompressed.toSet())
+        assertThat(compressed.matchByPrefix("ab")).isEqualTo(uncompressed.matchByPrefix("ab"))
+        arrayOf(LIBERAL, FUZZY_PREFIX, EXACT_PREFIX, FUZZY_POSTFIX, ADJACENT_SWAP, SYMMETRICAL_SWAP, WILDCARD, ACRONYM)
+            .forEach {
+                assertThat(compressed.matchBySubstringFuzzy("abca", 1, it).toSet())
+                    .describedAs(it.name)
+                    .isEqualTo(uncompressed.matchBySubstringFuzzy("abca", 1, it).toSet())
+            }
+    }
+
+    @Test
+    fun testPutAllSameAsPut() {
+        // Arrange
+        val random = Random(11)
+        val strings = (0..500).map { randomWords(random) }.toSet()
+        val putOneByOne = Trie<String>(compressed = true)
+        val putAll = Trie<String>(compressed = true)
+        strings.forEach { putOneByOne.put(it, it) }
+
+        // Act
+        putAll.putAll(strings.asSequence().map { it to it })
+
+        // Assert
+        assertThat(putAll.size).isEqualTo(putOneByOne.size)
+        assertThat(putAll.depth()).isEqualTo(putOneByOne.depth())
+        assertThat(putAll.toSet()).isEqualTo(putOneByOne.toSet())
+        assertThat(putAll.matchBySubstringFuzzy("abca", 1, LIBERAL).toSet())
+            .isEqualTo(putOneByOne.matchBySubstringFuzzy("abca", 1, LIBERAL).toSet())
+    }
+
+    private fun randomWords(random: Random): String {
+        return (0..random.nextInt(3))
+            .joinToString(" ") {
+                (0..random.nextInt(8))
+                    .map { 'a' + random.nextInt(4) }
+                    .joinToString("")
+            }
+    }
+}
@@ -1,17 +1,20 @@
 package com.rcs.trie
 
 import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
 import java.nio.charset.StandardCharsets
 import java.util.*
 import java.util.concurrent.Executors
-import kotlin.test.Test
+import java.util.concurrent.atomic.AtomicBoolean
 
 class TrieConcurrencyTest {
 
-    @Test
-    fun testConcurrency() {
+    @ParameterizedTest
+    @ValueSource(booleans = [false, true])
+    fun testConcurrency(compressed: Boolean) {
         // Arrange
-        val trie = Trie<Unit>()
+        val trie = Trie<Unit>(compressed)
         val executorService = Executors.newVirtualThreadPerTaskExecutor()
         val originalRandomStrings = (0..10_000)
             .map { getRandomString() }
@@ -61,6 +64,86 @@ class TrieConcurrencyTest {
         assertThat(trie.size).isEqualTo(actualStringsRemaining.size)
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = [false, true])
+    fun testReadsDuringWrites(compressed: Boolean) {
+        // Arrange
+        val trie = Trie<Unit>(compressed)
+        val executorService = Executors.newVirtualThreadPerTaskExecutor()
+        val stableStrings = (0..1_000).map { "stable $it" }.toSet()
+        val changingStrings = (0..1_000).map { "stable $it changing" }.toSet()
+        stableStrings.forEach { trie.put(it, Unit) }
+
+        // Act
+        // writers keep adding and removing strings that share their prefixes with the stable ones,
+        // which splits and merges nodes in a compressed trie
+        val writeFutures = changingStrings.map {
+            executorService.submit {
+                trie.put(it, Unit)
+                trie.remove(it)
+            }
+        }
+
+        val readFutures = stableStrings.map {
+            executorService.submit<Boolean> {
+                trie.containsExactly(it) && trie.matchByPrefix(it).keys.containsAll(stableStrings.filter { s ->
+                    s.startsWith(it) && s != it
+                })
+            }
+        }
+
+        // Assert
+        writeFutures.forEach { it.get() }
+        assertThat(readFutures.map { it.get() }).containsOnly(true)
+        assertThat(trie.toSet().map { it.string }).containsExactlyInAnyOrderElementsOf(stableStrings)
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = [false, true])
+    fun testSearchesDuringRemoves(compressed: Boolean) {
+        // Arrange
+        val trie = Trie<Int>(compressed)
+        val executorService = Executors.newFixedThreadPool(8)
+        val stableStrings = (0..200).map { "stable $it" }.toSet()
+        val removedStrings = (0..200).map { "stable $it removed" }
+        stableStrings.forEach { trie.put(it, 0) }
+        val writing = AtomicBoolean(true)
+
+        // Act
+        // writers keep adding and removing strings, whose values are cleared while readers look at their nodes
+        val writeFutures = (0..3).map {
+            executorService.submit {
+                repeat(200) {
+                    removedStrings.forEach { trie.put(it, 1) }
+                    removedStrings.forEach { trie.remove(it) }
+                }
+            }
+        }
+
+        val readFutures = (0..3).map {
+            executorService.submit<Boolean> {
+                var allFound = true
+                while (writing.get()) {
+                    val substringMatches = trie.matchBySubstringFuzzy("stable 1", 1, FuzzyMatchingStrategy.LIBERAL)
+                    val prefixMatches = trie.matchByPrefixFuzzy("stable 1", 1)
+                    val entries = trie.iterator().asSequence().map { entry -> entry.string }.toSet()
+                    allFound = allFound
+                            && substringMatches.any { result -> result.string == "stable 1" }
+                            && prefixMatches.containsKey("stable 1")
+                            && entries.containsAll(stableStrings)
+                }
+                allFound
+            }
+        }
+
+        // Assert
+        writeFutures.forEach { it.get() }
+        writing.set(false)
+        assertThat(readFutures.map { it.get() }).containsOnly(true)
+        assertThat(trie.toSet().map { it.string }).containsExactlyInAnyOrderElementsOf(stableStrings)
+        executorService.shutdown()
+    }
+
     private fun getRandomString(): String {
         val array = ByteArray(20)
         Random().nextBytes(array)
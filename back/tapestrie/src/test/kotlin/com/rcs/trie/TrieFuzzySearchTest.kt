@@ -15,19 +15,22 @@ class TrieFuzzySearchTest {
     )
 
     private fun runTestScenario(scenario: FuzzySearchScenario) {
-        // Arrange
-        val trie = Trie<Unit>()
-        scenario.entries.forEach {
-            trie.put(it, Unit)
-        }
+        listOf(false, true).forEach { compressed ->
+            // Arrange
+            val trie = Trie<Unit>(compressed)
+            scenario.entries.forEach {
+                trie.put(it, Unit)
+            }
 
-        // Act
-        val result = trie.matchBySubstringFuzzy(
-            scenario.search, scenario.errorTolerance, scenario.matchingStrategy)
+            // Act
+            val result = trie.matchBySubstringFuzzy(
+                scenario.search, scenario.errorTolerance, scenario.matchingStrategy)
 
-        // Assert
-        assertThat(result)
-            .isEqualTo(scenario.expectedResults)
+            // Assert
+            assertThat(result)
+                .describedAs("compressed = $compressed")
+                .isEqualTo(scenario.expectedResults)
+        }
     }
 
     @Test
@@ -333,6 +336,37 @@ class TrieFuzzySearchTest {
         runTestScenario(scenario)
     }
 
+    @Test
+    fun `returns only the best results up to the limit`() {
+        val entries = listOf("manual", "manuel", "manuem", "emanuel", "lemanuel", "lemanuell", "manually", "manuals")
+            .flatMap { listOf(it, "linux $it", "$it pages", "the $it of linux") }
+            .toSet()
+
+        listOf(false, true).forEach { compressed ->
+            // Arrange
+            val trie = Trie<Unit>(compressed)
+            entries.forEach {
+                trie.put(it, Unit)
+            }
+
+            arrayOf(LIBERAL, FUZZY_PREFIX, EXACT_PREFIX, FUZZY_POSTFIX, ADJACENT_SWAP, SYMMETRICAL_SWAP, WILDCARD, ACRONYM)
+                .forEach { strategy ->
+                    val search = if (strategy == ACRONYM) "tmo" else "manual"
+                    val allResults = trie.matchBySubstringFuzzy(search, 1, strategy)
+
+                    listOf(1, 3, 10, 100).forEach { limit ->
+                        // Act
+                        val result = trie.matchBySubstringFuzzy(search, 1, strategy, limit)
+
+                        // Assert
+                        assertThat(result)
+                            .describedAs("compressed = $compressed, strategy = $strategy, limit = $limit")
+                            .isEqualTo(allResults.take(limit))
+                    }
+                }
+        }
+    }
+
     @Test
     fun `matching strategy FUZZY_POSTFIX will only accept errors at the end`() {
         val scenario = FuzzySearchScenario(
@@ -488,4 +522,17 @@ class TrieFuzzySearchTest {
             )
         ).forEach { runTestScenario(it) }
     }
+
+    @Test
+    fun `word separators are the same as matching whitespace or punctuation`() {
+        // Arrange
+        val regex = "[\\s\\p{P}]".toRegex()
+
+        // Act & Assert
+        (Char.MIN_VALUE..Char.MAX_VALUE).forEach {
+            assertThat(it.isWordSeparator())
+                .describedAs("char %04x", it.code)
+                .isEqualTo(it.toString().matches(regex))
+        }
+    }
 }
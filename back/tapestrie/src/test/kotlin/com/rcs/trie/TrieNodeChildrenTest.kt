@@ -0,0 +1,76 @@
+package com.rcs.trie
+
+import org.assertj.core.api.Assertions.assertThat
+import kotlin.test.Test
+
+class TrieNodeChildrenTest {
+
+    @Test
+    fun testAddAndGet() {
+        // Arrange
+        val children = TrieNodeChildren<Unit>()
+        val characters = "qwertyuiopasdfghjklzxcvbnm"
+
+        // Act
+        characters.forEach { children.add(node(it)) }
+
+        // Assert
+        assertThat(children.size).isEqualTo(characters.length)
+        characters.forEach { assertThat(children.get(it)?.char).isEqualTo(it) }
+        assertThat(children.get('1')).isNull()
+        assertThat(children.map { it.char }.joinToString(""))
+            .isEqualTo("abcdefghijklmnopqrstuvwxyz")
+    }
+
+    @Test
+    fun testAddReplacesExisting() {
+        // Arrange
+        val children = TrieNodeChildren<Unit>()
+        val original = node('a')
+        val replacement = node('a')
+        children.add(original)
+
+        // Act
+        children.add(replacement)
+
+        // Assert
+        assertThat(children.size).isEqualTo(1)
+        assertThat(children.get('a')).isSameAs(replacement)
+    }
+
+    @Test
+    fun testRemove() {
+        // Arrange
+        val children = TrieNodeChildren<Unit>()
+        "abcde".forEach { children.add(node(it)) }
+
+        // Act
+        val removed = children.remove('c')
+        val removedNonExistent = children.remove('z')
+
+        // Assert
+        assertThat(removed?.char).isEqualTo('c')
+        assertThat(removedNonExistent).isNull()
+        assertThat(children.size).isEqualTo(4)
+        assertThat(children.get('c')).isNull()
+        assertThat(children.map { it.char }).containsExactly('a', 'b', 'd', 'e')
+    }
+
+    @Test
+    fun testEmpty() {
+        // Arrange
+        val children = TrieNodeChildren<Unit>()
+
+        // Act
+        val result = children.get('a')
+
+        // Assert
+        assertThat(result).isNull()
+        assertThat(children.isEmpty()).isTrue()
+        assertThat(children.toList()).isEmpty()
+    }
+
+    private fun node(char: Char): TrieNode<Unit> {
+        return TrieNode(char, null, null, 0, TrieNodeChildren(), TrieNode.root())
+    }
+}
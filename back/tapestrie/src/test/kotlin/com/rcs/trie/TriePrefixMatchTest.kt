@@ -16,18 +16,53 @@ class TriePrefixMatchTest {
         val softAssertions = SoftAssertions()
 
         this.forEach { scenario ->
-            // Arrange
-            val trie = Trie<Int>()
-            scenario.entries.forEach {
-                trie.put(it.key, it.value)
+            listOf(false, true).forEach { compressed ->
+                // Arrange
+                val trie = Trie<Int>(compressed)
+                scenario.entries.forEach {
+                    trie.put(it.key, it.value)
+                }
+
+                // Act
+                val result = trie.matchByPrefix(scenario.search)
+
+                // Assert
+                softAssertions.assertThat(result)
+                    .describedAs("compressed = $compressed")
+                    .isEqualTo(scenario.expectedResults)
             }
+        }
+
+        softAssertions.assertAll()
+    }
+
+    @Test
+    fun `test matchByPrefixFuzzy returns the closest matches first`() {
+        val softAssertions = SoftAssertions()
+
+        listOf(false, true).forEach { compressed ->
+            // Arrange
+            val trie = Trie<Int>(compressed)
+            trie.put("Hello, Nomads!", 1)
+            trie.put("Hello, World!", 2)
+            trie.put("Hi there!", 3)
+            trie.put("Well, Hello", 4)
 
             // Act
-            val result = trie.matchByPrefix(scenario.search)
+            val helo = trie.matchByPrefixFuzzy("Helo", 1)
+            val wel = trie.matchByPrefixFuzzy("wel", 1)
+            val hix = trie.matchByPrefixFuzzy("hix", 0)
 
             // Assert
-            softAssertions.assertThat(result)
-                .isEqualTo(scenario.expectedResults)
+            softAssertions.assertThat(helo.entries.map { it.toPair() })
+                .describedAs("compressed = $compressed")
+                .containsExactly("Hello, Nomads!" to 1, "Hello, World!" to 2)
+            softAssertions.assertThat(wel.keys.toList())
+                .describedAs("compressed = $compressed")
+                .containsExactly("Well, Hello", "Hello, Nomads!", "Hello, World!")
+            softAssertions.assertThat(hix)
+                .describedAs("compressed = $compressed")
+                .isEmpty()
         }
 
         softAssertions.assertAll()
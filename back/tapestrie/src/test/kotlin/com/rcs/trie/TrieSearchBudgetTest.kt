@@ -0,0 +1,78 @@
+package com.rcs.trie
+
+import com.rcs.trie.FuzzyMatchingStrategy.LIBERAL
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeoutOrNull
+import org.assertj.core.api.Assertions.assertThat
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertFailsWith
+
+class TrieSearchBudgetTest {
+
+    private val random = Random(42)
+
+    private val trie = Trie<Int>(true).apply {
+        repeat(5_000) { put(randomString(), it) }
+    }
+
+    @Test
+    fun testUnlimitedBudgetFindsAllResults() {
+        // Arrange
+        val expected = trie.matchBySubstringFuzzy("abcd", 1, LIBERAL)
+
+        // Act
+        val result = trie.matchBySubstringFuzzy("abcd", 1, LIBERAL, Int.MAX_VALUE, SearchBudget.UNLIMITED)
+
+        // Assert
+        assertThat(result.truncated).isFalse()
+        assertThat(result.results).isEqualTo(expected)
+    }
+
+    @Test
+    fun testExhaustedBudgetReturnsPartialResults() {
+        // Arrange
+        val all = trie.matchBySubstringFuzzy("abcd", 1, LIBERAL)
+
+        // Act
+        val byStates = trie.matchBySubstringFuzzy("abcd", 1, LIBERAL, Int.MAX_VALUE, SearchBudget.ofVisitedStates(1_000))
+        val byTime = trie.matchBySubstringFuzzy("abcd", 1, LIBERAL, Int.MAX_VALUE, SearchBudget.ofMillis(0))
+
+        // Assert
+        // a string may have been found only by a worse match than the best, which was not reached
+        assertThat(byStates.truncated).isTrue()
+        assertThat(byStates.results.size).isLessThan(all.size)
+        assertThat(all.map { it.string }).containsAll(byStates.results.map { it.string })
+        assertThat(byTime.truncated).isTrue()
+        assertThat(all.map { it.string }).containsAll(byTime.results.map { it.string })
+    }
+
+    @Test
+    fun testSearchStopsWhenCancelled() {
+        // Arrange
+        val largeTrie = Trie<Int>(true)
+        repeat(50_000) { largeTrie.put(randomString() + " " + randomString(), it) }
+
+        // Act
+        val result = runBlocking {
+            withTimeoutOrNull(1) {
+                FuzzySearcher.searchWithin(largeTrie.root, "abcd", 2, LIBERAL, Int.MAX_VALUE, SearchBudget.UNLIMITED)
+            }
+        }
+
+        // Assert
+        assertThat(result).isNull()
+    }
+
+    @Test
+    fun testBudgetMustNotBeNegative() {
+        // Act & Assert
+        assertFailsWith<IllegalArgumentException> { SearchBudget.ofMillis(-1) }
+        assertFailsWith<IllegalArgumentException> { SearchBudget.ofVisitedStates(-1) }
+    }
+
+    private fun randomString(): String {
+        val alphabet = "abcdefghij"
+        return (1..random.nextInt(4, 12)).map { alphabet[random.nextInt(alphabet.length)] }.joinToString("")
+    }
+}
@@ -12,18 +12,21 @@ class TrieSubstringMatchTest {
     )
 
     private fun runTestScenario(scenario: SubstringMatchScenario) {
-        // Arrange
-        val trie = Trie<Unit>()
-        scenario.entries.forEach {
-            trie.put(it, Unit)
-        }
+        listOf(false, true).forEach { compressed ->
+            // Arrange
+            val trie = Trie<Unit>(compressed)
+            scenario.entries.forEach {
+                trie.put(it, Unit)
+            }
 
-        // Act
-        val result = trie.matchBySubstring(scenario.search)
+            // Act
+            val result = trie.matchBySubstring(scenario.search)
 
-        // Assert
-        assertThat(result)
-            .isEqualTo(scenario.expectedResults)
+            // Assert
+            assertThat(result)
+                .describedAs("compressed = $compressed")
+                .isEqualTo(scenario.expectedResults)
+        }
     }
 
     @Test